@@ -0,0 +1,62 @@
+package hit.final_project;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application for benchmarks and fills the jobs table with synthetic rows.
+ */
+final class BenchmarkApplication {
+    static final String[] STATUSES = {"PENDING", "RUNNING", "SUCCESS", "FAILED"};
+    static final String[] JOB_TYPES = {"BUILD", "DEPLOY", "TEST"};
+    // a real BCrypt hash, so seeded rows have the same width as created ones
+    static final String HASHED_SECRET = "$2a$10$I6cBDu.U6E1MDSBfmcXWmOfuktCyemnWmSY631da3zKV9KSmiafvu";
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Starts the application on a random port, logging to target/benchmark.log
+     * @param properties extra key=value properties, overriding application.properties
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--logging.file.name=target/benchmark.log",
+                "--logging.level.hit.final_project=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(FinalProjectApplication.class).run(args.toArray(String[]::new));
+    }
+
+    static void stop(ConfigurableApplicationContext context) {
+        SpringApplication.exit(context);
+    }
+
+    static Job syntheticJob(int i) {
+        LocalDateTime createdAt = LocalDateTime.now().minusMinutes(i % (30 * 24 * 60));
+        return new Job("Job " + i, STATUSES[i % STATUSES.length], createdAt, createdAt.plusMinutes(5),
+                JOB_TYPES[i % JOB_TYPES.length], HASHED_SECRET);
+    }
+
+    /**
+     * Inserts rows synthetic jobs through the repository in batches
+     */
+    static void seed(JobRepository jobRepository, int rows) {
+        List<Job> chunk = new ArrayList<>(1000);
+        for (int i = 0; i < rows; i++) {
+            chunk.add(syntheticJob(i));
+            if (chunk.size() == 1000) {
+                jobRepository.saveAll(chunk);
+                chunk.clear();
+            }
+        }
+        jobRepository.saveAll(chunk);
+    }
+}
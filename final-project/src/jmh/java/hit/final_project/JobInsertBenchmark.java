@@ -0,0 +1,85 @@
+package hit.final_project;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput and index size with random (version 4) and time ordered
+ * (version 7) job uuids, against PostgreSQL with the postgres profile.
+ * Needs an empty database for the benchmark, e.g.
+ * {@code createdb -h localhost -U postgres jobs_benchmark}; its jobs table is
+ * truncated before every trial. The size of the uuid index and the primary key
+ * is printed after every trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class JobInsertBenchmark {
+    private static final int BATCH = 500;
+
+    @Param({"random", "time-ordered"})
+    public String uuids;
+
+    @Param({"jdbc:postgresql://localhost:5432/jobs_benchmark"})
+    public String url;
+
+    // rows inserted before measuring, so the inserts go into an index larger than a few pages
+    @Param({"200000"})
+    public int preload;
+
+    private ConfigurableApplicationContext context;
+    private JobRepository jobRepository;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("spring.profiles.active=postgres", "spring.datasource.url=" + url);
+        jobRepository = context.getBean(JobRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.execute("TRUNCATE jobs");
+        for (int i = 0; i < preload; i += BATCH) {
+            jobRepository.saveAll(batch());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long rows = jdbcTemplate.queryForObject("SELECT count(*) FROM jobs", Long.class);
+        long uuidIndex = jdbcTemplate.queryForObject("SELECT pg_relation_size('jobs_uuid_idx')", Long.class);
+        long primaryKey = jdbcTemplate.queryForObject("SELECT pg_relation_size('jobs_pkey')", Long.class);
+        System.out.printf("%n%s uuids: %,d rows, jobs_uuid_idx %,d kB (%.1f bytes/row), jobs_pkey %,d kB (%.1f bytes/row)%n",
+                uuids, rows, uuidIndex / 1024, (double) uuidIndex / rows, primaryKey / 1024, (double) primaryKey / rows);
+        BenchmarkApplication.stop(context);
+    }
+
+    /**
+     * Inserts BATCH jobs in one transaction; the score is in jobs per second
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Job> insertBatch() {
+        return jobRepository.saveAll(batch());
+    }
+
+    private List<Job> batch() {
+        List<Job> jobs = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            Job job = BenchmarkApplication.syntheticJob(i);
+            if (uuids.equals("random")) {
+                job.setUuid(UUID.randomUUID());
+            }
+            jobs.add(job);
+        }
+        return jobs;
+    }
+}
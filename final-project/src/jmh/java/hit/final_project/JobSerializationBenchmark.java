@@ -0,0 +1,85 @@
+package hit.final_project;
+
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Jackson serialization of job list responses, configured like the
+ * application's ObjectMapper. Output is discarded so only serialization is measured.
+ * <p>
+ * serializer selects the path being measured:
+ * reflection is plain Jackson, blackbird adds the Blackbird module,
+ * and handwritten is the application setup (Blackbird for Job, JobSummarySerializer
+ * for JobSummary). The gzip benchmark adds the cost of response compression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobSerializationBenchmark {
+
+    @JsonSerialize(using = JsonSerializer.None.class)
+    private interface ReflectiveSerialization {
+    }
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"reflection", "blackbird", "handwritten"})
+    public String serializer;
+
+    private ObjectMapper objectMapper;
+    private List<Job> jobs;
+    private List<JobSummary> summaries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (!serializer.equals("reflection")) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        if (!serializer.equals("handwritten")) {
+            builder.mixIn(JobSummary.class, ReflectiveSerialization.class);
+        }
+        objectMapper = builder.build();
+        jobs = new ArrayList<>(rows);
+        summaries = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Job job = BenchmarkApplication.syntheticJob(i);
+            job.setId((long) i);
+            jobs.add(job);
+            summaries.add(new JobSummary(job.getId(), job.getUuid(), job.getJobName(), job.getStatus(),
+                    job.getCreatedAt(), job.getUpdatedAt(), job.getJobType()));
+        }
+    }
+
+    @Benchmark
+    public void serializeJobs() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), jobs);
+    }
+
+    @Benchmark
+    public void serializeSummaries() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), summaries);
+    }
+
+    @Benchmark
+    public void serializeSummariesGzip() throws IOException {
+        try (OutputStream gzip = new GZIPOutputStream(OutputStream.nullOutputStream(), 8192)) {
+            objectMapper.writeValue(gzip, summaries);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package hit.final_project;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the JobService hot paths against the in-memory H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobServiceBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private JobService jobService;
+    private JobRepository jobRepository;
+    private long minId;
+    private long maxId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        jobService = context.getBean(JobService.class);
+        jobRepository = context.getBean(JobRepository.class);
+        BenchmarkApplication.seed(jobRepository, rows);
+        List<JobSummary> first = jobService.getJobsPage(null, 1);
+        minId = first.get(0).id();
+        maxId = minId + rows;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkApplication.stop(context);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(minId, maxId);
+    }
+
+    @Benchmark
+    public Job createJob() {
+        return jobService.createJob(new Job("Benchmark Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret"));
+    }
+
+    @Benchmark
+    public Job createJobWithoutHashing() {
+        return jobRepository.save(new Job("Benchmark Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", BenchmarkApplication.HASHED_SECRET));
+    }
+
+    @Benchmark
+    public Optional<Job> findJobById() {
+        return jobService.findJobById(randomId());
+    }
+
+    @Benchmark
+    public Optional<Job> findJobByIdUncached() {
+        return jobRepository.findById(randomId());
+    }
+
+    @Benchmark
+    public List<JobSummary> getJobsByStatus() {
+        return jobService.getJobsByStatus("FAILED");
+    }
+
+    @Benchmark
+    public List<JobSummary> getJobsByJobType() {
+        return jobService.getJobsByJobType("DEPLOY");
+    }
+
+    @Benchmark
+    public List<JobSummary> getJobsByDateRange() {
+        LocalDateTime end = LocalDateTime.now().minusDays(ThreadLocalRandom.current().nextInt(29));
+        return jobService.getJobsByDateRange(end.minusDays(1), end);
+    }
+}
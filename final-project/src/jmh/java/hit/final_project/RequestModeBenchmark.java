@@ -0,0 +1,80 @@
+package hit.final_project;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test comparing Tomcat's platform thread pool with virtual thread
+ * request execution. Each invocation fires a burst of concurrent date range
+ * requests, which block on JDBC, and waits until all of them have answered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RequestModeBenchmark {
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"1000"})
+    public int burst;
+
+    @Param({"20000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("spring.threads.virtual.enabled=" + virtualThreads);
+        BenchmarkApplication.seed(context.getBean(JobRepository.class), rows);
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/jobs";
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        BenchmarkApplication.stop(context);
+    }
+
+    @Benchmark
+    public int burstOfDateRangeRequests() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(burst);
+        for (int i = 0; i < burst; i++) {
+            LocalDateTime end = LocalDateTime.now().minusDays(ThreadLocalRandom.current().nextInt(29)).withNano(0);
+            URI uri = URI.create(baseUrl + "/date-range?startDate=" + end.minusHours(6) + "&endDate=" + end);
+            responses.add(client.sendAsync(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding()));
+        }
+        int failures = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                failures++;
+            }
+        }
+        if (failures > 0) {
+            throw new IllegalStateException(failures + " of " + burst + " requests failed");
+        }
+        return burst;
+    }
+}
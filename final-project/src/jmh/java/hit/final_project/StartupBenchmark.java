@@ -0,0 +1,102 @@
+package hit.final_project;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request: launches the packaged application in a new JVM and
+ * measures until GET /api/jobs answers 200.
+ * jar starts target/final-project-0.0.1-SNAPSHOT.jar as built by package;
+ * fast-startup starts the extracted jar with the AppCDS archive and AOT
+ * initialization, and needs a build with -Pfast-startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+    private static final Path JAR = Path.of("target", "final-project-0.0.1-SNAPSHOT.jar");
+    private static final Path EXTRACTED_JAR = Path.of("target", "app", "final-project-0.0.1-SNAPSHOT.jar");
+    private static final Path CDS_ARCHIVE = Path.of("target", "app", "application.jsa");
+
+    @Param({"jar", "fast-startup"})
+    public String mode;
+
+    private HttpClient client;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Path required = mode.equals("jar") ? JAR : CDS_ARCHIVE;
+        if (!Files.exists(required)) {
+            throw new IllegalStateException(required + " not found, build with"
+                    + (mode.equals("jar") ? "" : " -Pfast-startup") + " package first");
+        }
+        client = HttpClient.newHttpClient();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopApplication() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+            process = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(List.of(java));
+        if (mode.equals("jar")) {
+            command.addAll(List.of("-jar", JAR.toString()));
+        } else {
+            command.addAll(List.of("-XX:SharedArchiveFile=" + CDS_ARCHIVE, "-Dspring.aot.enabled=true", "-jar", EXTRACTED_JAR.toString()));
+        }
+        command.addAll(List.of("--server.port=" + port, "--logging.file.name=target/startup-benchmark.log"));
+        process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.to(new File("target/startup-benchmark.out")))
+                .start();
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/jobs")).GET().build();
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue() + ", see target/startup-benchmark.out");
+            }
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status == 200) {
+                    return status;
+                }
+            } catch (ConnectException e) {
+                // not listening yet
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package hit.final_project;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * AIMD limit on the number of /api/jobs requests being served at once.
+ * While requests finish within the latency threshold the limit grows by about
+ * one per limit's worth of requests; a slower request cuts it by the backoff
+ * factor, at most once per round of requests (samples that started before the
+ * last cut are ignored). Once the connection pool saturates, latency rises and
+ * the limit shrinks, so excess requests are shed with 503 instead of queueing
+ * for a connection until they time out.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoff;
+    private final LongSupplier nanoTime;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private long lastDecreaseNanos;
+
+    @Autowired
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${app.ratelimit.concurrency.initial-limit:40}") int initialLimit,
+                                      @Value("${app.ratelimit.concurrency.min-limit:8}") int minLimit,
+                                      @Value("${app.ratelimit.concurrency.max-limit:200}") int maxLimit,
+                                      @Value("${app.ratelimit.concurrency.latency-threshold:PT0.5S}") Duration latencyThreshold,
+                                      @Value("${app.ratelimit.concurrency.backoff:0.9}") double backoff) {
+        this(meterRegistry, initialLimit, minLimit, maxLimit, latencyThreshold, backoff, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime clock the start times passed to release are read from
+     */
+    AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry, int initialLimit, int minLimit, int maxLimit,
+                               Duration latencyThreshold, double backoff, LongSupplier nanoTime) {
+        if (minLimit < 1 || minLimit > maxLimit || backoff <= 0 || backoff >= 1) {
+            throw new IllegalArgumentException("Invalid app.ratelimit.concurrency settings");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoff = backoff;
+        this.nanoTime = nanoTime;
+        this.lastDecreaseNanos = nanoTime.getAsLong();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        Gauge.builder("jobs.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on concurrent job requests")
+                .register(meterRegistry);
+        Gauge.builder("jobs.concurrency.in-flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Admits a request if fewer than the current limit are in flight.
+     * Every admitted request must be followed by exactly one release.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends an admitted request
+     * @param startNanos System.nanoTime() when it was admitted
+     * @param sample false for requests whose duration says nothing about load, such as streams
+     */
+    public void release(long startNanos, boolean sample) {
+        int current = inFlight.getAndDecrement();
+        if (!sample) {
+            return;
+        }
+        long now = nanoTime.getAsLong();
+        synchronized (this) {
+            if (now - startNanos > latencyThresholdNanos) {
+                if (startNanos - lastDecreaseNanos > 0) {
+                    limit = Math.max(minLimit, limit * backoff);
+                    lastDecreaseNanos = now;
+                }
+            } else if (current * 2 >= limit) {
+                // only grow while the limit is actually being used
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,21 @@
+package hit.final_project;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Assigns ids from blocks of a database sequence, see BlockSequenceGenerator.
+ * blockSize must equal the INCREMENT BY of the sequence.
+ */
+@IdGeneratorType(BlockSequenceGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface BlockSequence {
+    String name();
+
+    int blockSize();
+}
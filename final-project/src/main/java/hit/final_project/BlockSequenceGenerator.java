@@ -0,0 +1,80 @@
+package hit.final_project;
+
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out ids from memory, one database round trip per blockSize ids.
+ * <p>
+ * Each nextval of the sequence reserves the block ending at the returned value,
+ * the same ids Hibernate's pooled optimizer takes for it, so instances running
+ * either generator never collide. Request threads take ids from the current block
+ * with a single atomic increment; only the thread that finds the block used up
+ * takes the lock and fetches the next one, while the others wait for it.
+ */
+public class BlockSequenceGenerator implements IdentifierGenerator {
+    private record Block(AtomicLong next, long last) {
+    }
+
+    private final String nextValueSql;
+    private final int blockSize;
+    private final ReentrantLock refillLock = new ReentrantLock();
+    private volatile Block block = new Block(new AtomicLong(1), 0);
+
+    public BlockSequenceGenerator(BlockSequence config, Member member, CustomIdGeneratorCreationContext context) {
+        if (config.blockSize() < 1) {
+            throw new IllegalArgumentException("blockSize of " + config.name() + " must be positive");
+        }
+        this.nextValueSql = context.getDatabase().getDialect().getSequenceSupport().getSequenceNextValString(config.name());
+        this.blockSize = config.blockSize();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        while (true) {
+            Block current = block;
+            long id = current.next().getAndIncrement();
+            if (id <= current.last()) {
+                return id;
+            }
+            refillLock.lock();
+            try {
+                if (block == current) {
+                    long last = nextValue(session);
+                    block = new Block(new AtomicLong(Math.max(1, last - blockSize + 1)), last);
+                }
+            } finally {
+                refillLock.unlock();
+            }
+        }
+    }
+
+    // same statement handling as Hibernate's SequenceStructure, so the call does not flush the session
+    private long nextValue(SharedSessionContractImplementor session) {
+        JdbcCoordinator jdbcCoordinator = session.getJdbcCoordinator();
+        PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(nextValueSql);
+        try {
+            ResultSet resultSet = jdbcCoordinator.getResultSetReturn().extract(statement, nextValueSql);
+            try {
+                resultSet.next();
+                return resultSet.getLong(1);
+            } finally {
+                jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(resultSet, statement);
+            }
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper().convert(e, "Could not fetch the next block of ids", nextValueSql);
+        } finally {
+            jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbcCoordinator.afterStatementExecution();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package hit.final_project;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Token bucket per client and request tier.
+ * Each tier has its own sustained rate and burst, so a client polling the
+ * list endpoints runs out of list budget without losing its reads and writes.
+ * Buckets live in a bounded Caffeine cache; a bucket that was dropped is
+ * recreated full, which only ever errs on the side of letting a request through.
+ */
+@Component
+public class ClientRateLimiter {
+
+    public enum Tier {
+        /** single job lookups */
+        READ,
+        /** creates, updates and deletes */
+        WRITE,
+        /** list, search, stats and streaming endpoints, which read many rows */
+        LIST
+    }
+
+    private record Budget(double perSecond, double burst) {
+    }
+
+    private final Map<Tier, Budget> budgets = new EnumMap<>(Tier.class);
+    private final Cache<String, Bucket> buckets;
+
+    @Autowired
+    public ClientRateLimiter(@Value("${app.ratelimit.read.rate:50}") double readRate,
+                             @Value("${app.ratelimit.read.burst:100}") double readBurst,
+                             @Value("${app.ratelimit.write.rate:20}") double writeRate,
+                             @Value("${app.ratelimit.write.burst:40}") double writeBurst,
+                             @Value("${app.ratelimit.list.rate:5}") double listRate,
+                             @Value("${app.ratelimit.list.burst:20}") double listBurst,
+                             @Value("${app.ratelimit.max-clients:100000}") long maxClients) {
+        budgets.put(Tier.READ, new Budget(readRate, readBurst));
+        budgets.put(Tier.WRITE, new Budget(writeRate, writeBurst));
+        budgets.put(Tier.LIST, new Budget(listRate, listBurst));
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    /**
+     * Takes one token from the client's bucket for the tier
+     * @return zero if the request may proceed, otherwise how long until a token is available
+     */
+    public Duration tryAcquire(String client, Tier tier) {
+        Budget budget = budgets.get(tier);
+        Bucket bucket = buckets.get(tier.name() + ':' + client, key -> new Bucket(budget.perSecond(), budget.burst()));
+        return Duration.ofNanos(bucket.tryConsume(System.nanoTime()));
+    }
+
+    static final class Bucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt;
+
+        Bucket(double perSecond, double capacity) {
+            this.tokensPerNano = perSecond / 1_000_000_000d;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.refilledAt = System.nanoTime();
+        }
+
+        synchronized long tryConsume(long now) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+    }
+}
@@ -2,40 +2,64 @@ package hit.final_project;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.CommandLineRunner;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
 
-
-@Configuration
+/**
+ * Inserts a few sample jobs when the "seed" profile is active.
+ * Seeding runs in the background once the application is ready, so it never
+ * delays startup. It goes through the batch create path with fixed UUIDs:
+ * the samples are hashed by the application's hasher and inserted in one batch,
+ * and a later boot against the same database replays them instead of inserting again.
+ */
+@Component
+@Profile("seed")
 public class DatabaseSeeder {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseSeeder.class);
-    private BCryptPasswordEncoder sensitiveDataEncoder = new BCryptPasswordEncoder();
-
-
-    @Bean
-    CommandLineRunner initDatabase(JobRepository jobRepository) {
-        return args -> {
-            logger.info("Initializing database in runtime...");
-            // Examples taken from ChatGPT
-            Job job1 = new Job("Build Pipeline", "SUCCESS", LocalDateTime.now().minusDays(2), LocalDateTime.now().minusDays(1), "BUILD",sensitiveDataEncoder.encode("Build secrets"));
-            Job job2 = new Job("Deploy to Staging", "FAILED", LocalDateTime.now().minusDays(5), LocalDateTime.now().minusDays(4), "DEPLOY",sensitiveDataEncoder.encode("Deploy secrets"));
-            Job job3 = new Job("Unit Tests", "SUCCESS", LocalDateTime.now().minusDays(3), LocalDateTime.now().minusDays(2), "TEST"); // with no sensitive data
+    private final JobService jobService;
+    private final Executor taskExecutor;
 
-            jobRepository.save(job1);
-            logger.info("Created Job: {}", job1);
+    @Autowired
+    public DatabaseSeeder(JobService jobService, @Qualifier("applicationTaskExecutor") Executor taskExecutor) {
+        this.jobService = jobService;
+        this.taskExecutor = taskExecutor;
+    }
 
-            jobRepository.save(job2);
-            logger.info("Created Job: {}", job2);
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedInBackground() {
+        taskExecutor.execute(this::seed);
+    }
 
-            jobRepository.save(job3);
-            logger.info("Created Job: {}", job3);
+    void seed() {
+        logger.info("Seeding sample jobs...");
+        LocalDateTime now = LocalDateTime.now();
+        // Examples taken from ChatGPT
+        List<JobCreateDTO> samples = List.of(
+                sample("Build Pipeline", "SUCCESS", now.minusDays(2), now.minusDays(1), "BUILD", "Build secrets"),
+                sample("Deploy to Staging", "FAILED", now.minusDays(5), now.minusDays(4), "DEPLOY", "Deploy secrets"),
+                sample("Unit Tests", "SUCCESS", now.minusDays(3), now.minusDays(2), "TEST", "")); // with no sensitive data
+        try {
+            JobBatchResult result = jobService.createJobs(samples.iterator());
+            logger.info("Database seeding completed: {} created, {} already present, {} failed",
+                    result.getCreated(), result.getReplayed(), result.getFailed());
+        } catch (RuntimeException e) {
+            logger.error("Database seeding failed", e);
+        }
+    }
 
-            logger.info("Database seeding completed.");
-        };
+    private static JobCreateDTO sample(String jobName, String status, LocalDateTime createdAt, LocalDateTime updatedAt,
+                                       String jobType, String sensitiveData) {
+        UUID uuid = UUID.nameUUIDFromBytes(("seed:" + jobName).getBytes(StandardCharsets.UTF_8));
+        return new JobCreateDTO(jobName, status, createdAt, updatedAt, jobType, sensitiveData, uuid);
     }
-}
\ No newline at end of file
+}
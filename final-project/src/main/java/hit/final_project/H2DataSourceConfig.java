@@ -1,6 +1,7 @@
 package hit.final_project;
 
 import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.jdbc.DataSourceBuilder;
@@ -22,7 +23,7 @@ public class H2DataSourceConfig {
 
     @Bean
     @ConfigurationProperties("app.datasource")
-    public HikariDataSource dataSource(DataSourceProperties properties) {
+    public HikariDataSource dataSource(@Qualifier("dataSourceProperties") DataSourceProperties properties) {
         return properties.initializeDataSourceBuilder().type(HikariDataSource.class)
                 .build();
     }}
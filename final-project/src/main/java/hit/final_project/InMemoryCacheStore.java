@@ -0,0 +1,78 @@
+package hit.final_project;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * In-memory stand-in for the Redis tier, used by tests and local runs
+ * without Redis (app.cache.remote=memory, the default).
+ * Holds at most app.cache.memory.max-size entries, each dropped once its
+ * ttl has passed since it was written.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.remote", havingValue = "memory", matchIfMissing = true)
+public class InMemoryCacheStore implements RemoteCacheStore {
+    private final Cache<String, Entry> entries;
+
+    private record Entry(String value, Duration ttl) {
+    }
+
+    @Autowired
+    public InMemoryCacheStore(@Value("${app.cache.memory.max-size:10000}") long maxSize) {
+        this(maxSize, Ticker.systemTicker());
+    }
+
+    InMemoryCacheStore(long maxSize, Ticker ticker) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .ticker(ticker)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public String get(String key) {
+        Entry entry = entries.getIfPresent(key);
+        return entry == null ? null : entry.value();
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        entries.put(key, new Entry(value, ttl));
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, String value, Duration ttl) {
+        return entries.asMap().putIfAbsent(key, new Entry(value, ttl)) == null;
+    }
+
+    @Override
+    public void putAll(Collection<String> keys, String value, Duration ttl) {
+        Entry entry = new Entry(value, ttl);
+        keys.forEach(key -> entries.put(key, entry));
+    }
+}
@@ -0,0 +1,20 @@
+package hit.final_project;
+
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Jackson tuning for the REST responses.
+ * Spring Boot registers Module beans with the application's ObjectMapper;
+ * Blackbird replaces reflective getter calls with generated lambdas, which
+ * speeds up serializing Job entities. JobSummary has its own serializer.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
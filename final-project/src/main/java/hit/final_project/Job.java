@@ -4,6 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.PartitionKey;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -12,26 +15,42 @@ import java.util.UUID;
 @Table(name="jobs")
 @Data
 @NoArgsConstructor
+// updates only write the columns that changed
+@DynamicUpdate
 public class Job {
-    @Id @GeneratedValue (strategy = GenerationType.AUTO)
+    // Ids come from blocks of 1000 of jobs_seq held in memory, which keeps JDBC insert batching enabled
+    @Id @BlockSequence(name = "jobs_seq", blockSize = 1000)
     private Long id;
+    // time ordered (version 7) unless the client supplied its own
     @Column
     private UUID uuid;
     private String jobName;
+    // stored as codes of the job_statuses and job_types lookup tables, see JobDictionary
+    @Column(name = "status_id")
+    @Convert(converter = JobDictionary.StatusConverter.class)
     private String status;
     @Column(name = "created_at")
+    @PartitionKey
     private LocalDateTime createdAt;
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+    @Column(name = "job_type_id")
+    @Convert(converter = JobDictionary.JobTypeConverter.class)
     private String jobType;
+    @ToString.Exclude
     private String sensitiveData;
+    // set while the job is claimed by a worker; RUNNING jobs past it go back to PENDING
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+    @Version
+    private Long version;
 
     public Job(String jobName, String status,LocalDateTime createdAt, LocalDateTime updatedAt, String jobType) {
         this(jobName,status,createdAt,updatedAt,jobType,"");
     }
 
     public Job(String jobName, String status, LocalDateTime createdAt, LocalDateTime updatedAt, String jobType, String sensitiveData) {
-        this.uuid = UUID.randomUUID();
+        this.uuid = TimeOrderedUuid.next();
         this.jobName = jobName;
         this.status = status;
         this.createdAt = createdAt;
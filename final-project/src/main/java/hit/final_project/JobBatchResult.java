@@ -0,0 +1,52 @@
+package hit.final_project;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk job ingestion.
+ * Holds one entry per received record, in input order, carrying either the id
+ * of the created job or the reason the record was rejected.
+ * A record whose uuid was already used is replayed: it carries the id of the
+ * existing job and nothing is inserted.
+ */
+@Data
+@NoArgsConstructor
+public class JobBatchResult {
+    private int received;
+    private int created;
+    private int failed;
+    private int replayed;
+    private List<RecordResult> results = new ArrayList<>();
+
+    void addCreated(int index, Long id) {
+        received++;
+        created++;
+        results.add(new RecordResult(index, id, null));
+    }
+
+    void addReplayed(int index, Long id) {
+        received++;
+        replayed++;
+        results.add(new RecordResult(index, id, null));
+    }
+
+    void addFailed(int index, String error) {
+        received++;
+        failed++;
+        results.add(new RecordResult(index, null, error));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecordResult {
+        private int index;
+        private Long id;
+        private String error;
+    }
+}
@@ -0,0 +1,247 @@
+package hit.final_project;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Two tier read-through cache for job lookups.
+ * The first tier is a bounded in-process Caffeine (W-TinyLFU) cache, the second
+ * a RemoteCacheStore shared by all instances (Redis in docker-compose).
+ * Both tiers hold the JSON form of the value, so every hit returns a fresh
+ * object that callers may mask or modify without corrupting the cache.
+ * Instances only evict their own near cache, so a change made on another
+ * instance is visible here at the latest after app.cache.near.ttl.
+ * <p>
+ * Eviction leaves a tombstone in both tiers for app.cache.tombstone-ttl, and
+ * loaded values are only cached where no entry is present. A read that loaded
+ * a row just before a change committed therefore cannot cache it over the
+ * eviction of that change.
+ */
+@Component
+public class JobCache {
+    private static final Logger logger = LoggerFactory.getLogger(JobCache.class);
+    // never the JSON form of a value
+    private static final String TOMBSTONE = "";
+
+    private final Cache<String, String> nearCache;
+    private final RemoteCacheStore remoteStore;
+    private final ObjectMapper objectMapper;
+    private final Duration remoteTtl;
+    private final Duration tombstoneTtl;
+    private final int maxListSize;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final Counter remoteErrors;
+
+    @Autowired
+    public JobCache(RemoteCacheStore remoteStore, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                    @Value("${app.cache.near.max-size:10000}") long nearMaxSize,
+                    @Value("${app.cache.near.ttl:PT1M}") Duration nearTtl,
+                    @Value("${app.cache.remote-ttl:PT10M}") Duration remoteTtl,
+                    @Value("${app.cache.max-list-size:1000}") int maxListSize,
+                    @Value("${app.cache.tombstone-ttl:PT10S}") Duration tombstoneTtl) {
+        this.remoteStore = remoteStore;
+        this.objectMapper = objectMapper;
+        this.remoteTtl = remoteTtl;
+        this.tombstoneTtl = tombstoneTtl;
+        this.maxListSize = maxListSize;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearMaxSize)
+                .expireAfter(new Expiry<String, String>() {
+                    @Override
+                    public long expireAfterCreate(String key, String json, long currentTime) {
+                        return (json.equals(TOMBSTONE) ? tombstoneTtl : nearTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, String json, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, json, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, String json, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "jobs.near");
+        this.remoteHits = Counter.builder("cache.gets").tag("cache", "jobs.remote").tag("result", "hit").register(meterRegistry);
+        this.remoteMisses = Counter.builder("cache.gets").tag("cache", "jobs.remote").tag("result", "miss").register(meterRegistry);
+        this.remoteErrors = Counter.builder("cache.errors").tag("cache", "jobs.remote").register(meterRegistry);
+    }
+
+    static String jobKey(Long id) {
+        return "job:" + id;
+    }
+
+    static String statusKey(String status) {
+        return "jobs:status:" + status;
+    }
+
+    static String jobTypeKey(String jobType) {
+        return "jobs:jobType:" + jobType;
+    }
+
+    /**
+     * Reads a single job, loading and caching it on a miss. Absent jobs are not cached.
+     * The hash of the sensitive data is not cached, so it is never copied to the
+     * shared tier; the returned job has it set to null, hit or miss. On a miss
+     * that is a copy, the loaded job may be a managed entity.
+     */
+    public Optional<Job> getJob(Long id, Supplier<Optional<Job>> loader) {
+        String key = jobKey(id);
+        Job cached = read(key, objectMapper.constructType(Job.class));
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return loader.get().map(job -> {
+            Job masked = objectMapper.convertValue(job, Job.class);
+            masked.setSensitiveData(null);
+            write(key, masked);
+            return masked;
+        });
+    }
+
+    /**
+     * Reads a list, loading and caching it on a miss.
+     * Lists longer than app.cache.max-list-size are returned but not cached.
+     */
+    public <T> List<T> getList(String key, Class<T> elementType, Supplier<List<T>> loader) {
+        List<T> cached = read(key, objectMapper.getTypeFactory().constructCollectionType(List.class, elementType));
+        if (cached != null) {
+            return cached;
+        }
+        List<T> loaded = loader.get();
+        if (loaded.size() <= maxListSize) {
+            write(key, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Evicts everything a change to the given jobs can make stale:
+     * each job itself and the status and job type lists it appears in.
+     */
+    public void invalidate(Job... jobs) {
+        invalidate(List.of(jobs));
+    }
+
+    public void invalidate(Collection<Job> jobs) {
+        evict(keys(jobs, true));
+    }
+
+    /**
+     * Evicts the status and job type lists new jobs join; the jobs themselves cannot be cached yet
+     */
+    public void invalidateCreated(Job... jobs) {
+        invalidateCreated(List.of(jobs));
+    }
+
+    public void invalidateCreated(Collection<Job> jobs) {
+        evict(keys(jobs, false));
+    }
+
+    public void evict(Collection<String> keys) {
+        Map<String, String> tombstones = new LinkedHashMap<>();
+        keys.forEach(key -> tombstones.put(key, TOMBSTONE));
+        nearCache.putAll(tombstones);
+        try {
+            remoteStore.putAll(keys, TOMBSTONE, tombstoneTtl);
+        } catch (RuntimeException e) {
+            remoteErrors.increment();
+            logger.warn("Could not evict {} from the remote cache: {}", keys, e.getMessage());
+        }
+    }
+
+    private static Set<String> keys(Collection<Job> jobs, boolean withJobs) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Job job : jobs) {
+            if (withJobs && job.getId() != null) {
+                keys.add(jobKey(job.getId()));
+            }
+            keys.add(statusKey(job.getStatus()));
+            keys.add(jobTypeKey(job.getJobType()));
+        }
+        return keys;
+    }
+
+    private <T> T read(String key, JavaType type) {
+        String json = nearCache.getIfPresent(key);
+        if (json == null) {
+            json = readRemote(key);
+            if (json == null) {
+                return null;
+            }
+            // an eviction made here meanwhile wins
+            String near = nearCache.asMap().putIfAbsent(key, json);
+            if (near != null) {
+                json = near;
+            }
+        }
+        if (json.equals(TOMBSTONE)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            logger.warn("Dropping unreadable cache entry {}", key);
+            nearCache.invalidate(key);
+            return null;
+        }
+    }
+
+    private String readRemote(String key) {
+        try {
+            String json = remoteStore.get(key);
+            (json == null ? remoteMisses : remoteHits).increment();
+            return json;
+        } catch (RuntimeException e) {
+            remoteErrors.increment();
+            logger.warn("Remote cache read failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(String key, Object value) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not serialize cache entry {}", key);
+            return;
+        }
+        // a tombstone or a value cached meanwhile is newer than what we loaded
+        if (nearCache.asMap().putIfAbsent(key, json) != null) {
+            return;
+        }
+        try {
+            remoteStore.putIfAbsent(key, json, remoteTtl);
+        } catch (RuntimeException e) {
+            remoteErrors.increment();
+            logger.warn("Remote cache write failed for {}: {}", key, e.getMessage());
+        }
+    }
+}
@@ -1,15 +1,36 @@
 package hit.final_project;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.beans.PropertyEditorSupport;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * REST Controller for Job Entity
@@ -20,44 +41,217 @@ import java.util.List;
 @RequestMapping("/api/jobs")
 public class JobController {
     private static final Logger logger = LoggerFactory.getLogger(JobController.class);
+    static final String NDJSON = "application/x-ndjson";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     private final JobService jobService;
+    private final ObjectMapper objectMapper;
+    private final JobEventStream jobEventStream;
 
     @Autowired
-    public JobController(JobService jobService) {
+    public JobController(JobService jobService, ObjectMapper objectMapper, JobEventStream jobEventStream) {
         this.jobService = jobService;
+        this.objectMapper = objectMapper;
+        this.jobEventStream = jobEventStream;
     }
 
     /**
-     * Gets all the jobs in the Job table using the JobService
+     * Binds the sort parameter of /search by its documented names (id, createdAt),
+     * not by the names of the enum constants; any other value is a 400
+     */
+    @InitBinder
+    void bindSortField(WebDataBinder binder) {
+        binder.registerCustomEditor(JobSearchCriteria.SortField.class, new PropertyEditorSupport() {
+            @Override
+            public void setAsText(String text) {
+                setValue(JobSearchCriteria.SortField.fromParameter(text));
+            }
+        });
+    }
+
+    /**
+     * Gets one page of jobs in the Job table using the JobService.
+     * Pages are keyset based: pass the X-Next-Cursor header of a response
+     * as the afterId of the next request.
+     * @param afterId id of the last job of the previous page, omit for the first page
+     * @param limit page size, capped by app.jobs.page.max-size
      * @return an HTTP Response including a JSON with an Array of JSONs,
-     * representing all the jobs in our database.
-     * Successful requests results in status code 200
+     * representing a page of jobs in our database.
+     * Successful requests results in status code 200, an afterId that is not
+     * a number or a limit below 1 in 400
      */
     @GetMapping
-    public ResponseEntity<List<Job>> getAllJobs() {
-        List<Job> jobs = jobService.getAllJobs();
-        return ResponseEntity.ok(jobs);
+    public ResponseEntity<List<JobSummary>> getAllJobs(@RequestParam(required = false) Long afterId,
+                                                       @RequestParam(required = false) Integer limit) {
+        int pageSize;
+        try {
+            pageSize = jobService.resolvePageSize(limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<JobSummary> jobs = jobService.getJobsPage(afterId, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!jobs.isEmpty() && jobs.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(jobs.get(jobs.size() - 1).id()));
+        }
+        return response.body(jobs);
+    }
+
+    /**
+     * Streams every job as newline delimited JSON when the client asks for
+     * application/x-ndjson. Rows are written as they are read from the database,
+     * so memory use does not depend on the size of the table.
+     */
+    @GetMapping(produces = NDJSON)
+    public void streamAllJobs(HttpServletResponse response) throws IOException {
+        writeNdjson(response, jobService::streamAllJobs);
     }
 
+    /**
+     * Creates a job. The request thread is released while the sensitive data
+     * is hashed; the response is written once the job has been saved.
+     * With an Idempotency-Key header, or a uuid in the body, retries of the
+     * request get the 201 response of the job created first.
+     * 400 if the Idempotency-Key and the uuid in the body disagree, a field is
+     * missing or a new status or job type would exceed app.jobs.dictionary.max-size,
+     * 503 with Retry-After if the hashing queue is full.
+     */
     @PostMapping
-    public ResponseEntity<Job> createJob(@RequestBody JobCreateDTO jobCreateDTO) {
-        Job savedJob = new Job(
-                jobCreateDTO.getJobName(),
-                jobCreateDTO.getStatus(),
-                jobCreateDTO.getCreatedAt(),
-                jobCreateDTO.getUpdatedAt(),
-                jobCreateDTO.getJobType(),
-                jobCreateDTO.getSensitiveData());
-        jobService.createJob(savedJob);
-        logger.debug(savedJob.toString());
-        String location = "/jobs/" + savedJob.getId();
-        return ResponseEntity.created(URI.create(location)).body(savedJob);
+    public CompletableFuture<ResponseEntity<Job>> createJob(@RequestBody JobCreateDTO jobCreateDTO,
+                                                            @RequestHeader(value = JobIdempotencyKeys.HEADER, required = false) String idempotencyKey) {
+        UUID clientUuid;
+        try {
+            clientUuid = JobIdempotencyKeys.resolve(idempotencyKey, jobCreateDTO.getUuid());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        CompletableFuture<Job> created;
+        try {
+            created = jobService.createJobAsync(jobCreateDTO.toJob(), clientUuid);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Invalid job: {}", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        } catch (RejectedExecutionException e) {
+            logger.warn("Rejected job create: {}", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build());
+        }
+        return created.thenApply(savedJob -> {
+            logger.debug("Created job with ID: {}", savedJob.getId());
+            String location = "/jobs/" + savedJob.getId();
+            return ResponseEntity.created(URI.create(location)).body(savedJob);
+        });
+    }
+
+    /**
+     * Creates many jobs in one request.
+     * The body is either a JSON array or a newline delimited stream of job JSONs;
+     * records are read one at a time, so the body is never held in memory as a whole.
+     * @return 200 with the outcome of every record, failed records do not abort the batch
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public ResponseEntity<JobBatchResult> createJobs(HttpServletRequest request) throws IOException {
+        try (MappingIterator<JobCreateDTO> records = objectMapper.readerFor(JobCreateDTO.class)
+                .readValues(request.getInputStream())) {
+            return ResponseEntity.ok(jobService.createJobs(records));
+        }
+    }
+
+    /**
+     * Claims pending jobs for a worker instead of listing PENDING jobs and updating them:
+     * up to limit of the oldest PENDING jobs are moved to RUNNING and leased atomically,
+     * so concurrent workers never get the same job. A worker ends the lease by updating
+     * the job's status; jobs still RUNNING when it expires become PENDING again.
+     * @param jobType only jobs of this type, omit for any type
+     * @param limit number of jobs wanted, default 1, capped by app.jobs.claim.max-limit
+     * @param lease ISO-8601 duration the worker may hold the jobs, default app.jobs.claim.lease
+     * @return 200 with the claimed jobs (an empty array if none are pending), 400 if the parameters are invalid
+     */
+    @PostMapping("/claim")
+    public ResponseEntity<List<Job>> claimJobs(@RequestParam(required = false) String jobType,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) Duration lease) {
+        try {
+            List<Job> jobs = jobService.claimJobs(jobType, limit, lease);
+            // Mask sensitive data before sending response
+            jobs.forEach(job -> job.setSensitiveData(null));
+            return ResponseEntity.ok(jobs);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Gets job statistics: counts by status and job type and failure rates,
+     * plus a creation histogram when from and to are given.
+     * @param source "summary" (default) for the in-memory counts, "db" to compute them exactly
+     * @param bucket histogram bucket size, "day" (default) or "hour"
+     * @return 200 with the statistics, 400 if the parameters are invalid
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<JobStats> getStats(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                             @RequestParam(defaultValue = "day") String bucket,
+                                             @RequestParam(defaultValue = "summary") String source) {
+        try {
+            return ResponseEntity.ok(jobService.getStats(from, to, bucket, "db".equals(source)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Searches jobs by any combination of status, jobType, createdFrom/createdTo
+     * (ISO date-times) and namePrefix, ordered by sort (id or createdAt) and descending.
+     * @param cursor nextCursor of the previous response, omit for the first page
+     * @param limit page size, capped by app.jobs.page.max-size
+     * @param count also return the number of matches; above app.jobs.search.count-cap
+     * the count is the cap and countIsLowerBound is set
+     * @return 200 with the page (empty for an unknown status or job type), 400 if the parameters are invalid
+     */
+    @GetMapping("/search")
+    public ResponseEntity<JobSearchResult> searchJobs(JobSearchCriteria criteria,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      @RequestParam(defaultValue = "false") boolean count) {
+        try {
+            return ResponseEntity.ok(jobService.searchJobs(criteria, cursor, limit, count));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Server-sent events for every job created, updated or deleted, replacing status polling.
+     * Events are named created, updated and deleted and carry the job without its sensitive data.
+     * @param status only jobs with this status before or after the change
+     * @param jobType only jobs of this type
+     * @param lastEventId sent by EventSource clients on reconnect to receive the events they missed
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@RequestParam(required = false) String status,
+                                   @RequestParam(required = false) String jobType,
+                                   @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return jobEventStream.subscribe(status, jobType, lastEventId);
     }
 
     // Job performs HTTP GET request in the form of api/jobs/id
+    // The ETag is the job version; a request whose If-None-Match matches it gets 304 without a body
     @GetMapping("/{id}")
     public ResponseEntity<Job> getJobById(@PathVariable long id) {
         return jobService.findJobById(id)
+                .map(job -> {
+                    // Mask sensitive data before sending response
+                    job.setSensitiveData(null);
+                    return ResponseEntity.ok().eTag(eTag(job)).body(job);
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Job performs HTTP GET request in the form of api/jobs/uuid/uuid, served by the unique uuid index
+    @GetMapping("/uuid/{uuid}")
+    public ResponseEntity<Job> getJobByUuid(@PathVariable UUID uuid) {
+        return jobService.findJobByUuid(uuid)
                 .map(job -> {
                     // Mask sensitive data before sending response
                     job.setSensitiveData(null);
@@ -66,18 +260,70 @@ public class JobController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Replaces the job's name, status and dates.
+     * With an If-Match header the update only happens if the job is still at that version.
+     * @return 200 with the new ETag, 412 if If-Match does not match,
+     * 409 if a concurrent update got in first, 400 for invalid fields or an If-Match that is not one of our ETags
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<Job> updateJob(@PathVariable long id, @RequestBody JobCreateDTO jobUpdateDTO) {
-        Job job = new Job(
-                jobUpdateDTO.getJobName(),
-                jobUpdateDTO.getStatus(),
-                jobUpdateDTO.getCreatedAt(),
-                jobUpdateDTO.getUpdatedAt(),
-                jobUpdateDTO.getJobType(),
-                jobUpdateDTO.getSensitiveData()
-        );
-        Job updatedJob = jobService.updateJob(id, job);
-        return ResponseEntity.ok(updatedJob);
+    public ResponseEntity<Job> updateJob(@PathVariable long id, @RequestBody JobCreateDTO jobUpdateDTO,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Job job = jobUpdateDTO.toJob();
+        return conditionalUpdate(ifMatch, expectedVersion -> jobService.updateJob(id, job, expectedVersion));
+    }
+
+    /**
+     * Changes only the fields present in the body; an UPDATE is issued only
+     * for columns whose value actually changes. Supports If-Match like PUT.
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<Job> patchJob(@PathVariable long id, @RequestBody JobPatchDTO jobPatchDTO,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return conditionalUpdate(ifMatch, expectedVersion -> jobService.patchJob(id, jobPatchDTO, expectedVersion));
+    }
+
+    private ResponseEntity<Job> conditionalUpdate(String ifMatch, Function<Long, Job> update) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expectedVersion = parseETag(ifMatch);
+            if (expectedVersion == null) {
+                logger.debug("Malformed If-Match: {}", ifMatch);
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        try {
+            Job updatedJob = update.apply(expectedVersion);
+            return ResponseEntity.ok().eTag(eTag(updatedJob)).body(updatedJob);
+        } catch (OptimisticLockingFailureException e) {
+            logger.debug("Conditional update rejected: {}", e.getMessage());
+            return ResponseEntity.status(expectedVersion != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
+        } catch (IllegalArgumentException e) {
+            logger.debug("Invalid update: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    static String eTag(Job job) {
+        return "\"" + job.getVersion() + "\"";
+    }
+
+    /**
+     * @return the version in an ETag produced by {@link #eTag(Job)}, null if it is not one
+     */
+    static Long parseETag(String eTag) {
+        String value = eTag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     @DeleteMapping("/{id}")
@@ -88,28 +334,57 @@ public class JobController {
         return ResponseEntity.noContent().build();
     }
 
+    // an empty list for a status the dictionary does not know, answered without a query
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<Job>> getJobsByStatus(@PathVariable String status) {
-        List<Job> jobs = jobService.getJobsByStatus(status);
-        // Mask sensitive data before sending response
-        jobs.forEach(job -> job.setSensitiveData(null));
-        return ResponseEntity.ok(jobs);
+    public ResponseEntity<List<JobSummary>> getJobsByStatus(@PathVariable String status) {
+        return ResponseEntity.ok(jobService.getJobsByStatus(status));
     }
 
     @GetMapping("/jobType/{jobType}")
-    public ResponseEntity<List<Job>> getJobsByJobType(@PathVariable String jobType){
-        List<Job> jobs = jobService.getJobsByJobType(jobType);
-        // Mask sensitive data before sending response
-        jobs.forEach(job -> job.setSensitiveData(null));
-        return ResponseEntity.ok(jobs);
+    public ResponseEntity<List<JobSummary>> getJobsByJobType(@PathVariable String jobType){
+        return ResponseEntity.ok(jobService.getJobsByJobType(jobType));
     }
 
+    /**
+     * Gets the jobs created between the two dates as a JSON array.
+     * The list is read in full before anything is written, so a failure while
+     * reading it is answered with an error status instead of a truncated array;
+     * for large ranges use the application/x-ndjson variant.
+     */
     @GetMapping("/date-range")
-    public ResponseEntity<List<Job>> getJobsByDateRange(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
-        List<Job> jobs = jobService.getJobsByDateRange(startDate, endDate);
-        // Mask sensitive data before sending response
-        jobs.forEach(job -> job.setSensitiveData(null));
-        return ResponseEntity.ok(jobs);
+    public ResponseEntity<List<JobSummary>> getJobsByDateRange(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        return ResponseEntity.ok(jobService.getJobsByDateRange(startDate, endDate));
+    }
+
+    /**
+     * Streams the jobs created between the two dates as newline delimited JSON,
+     * for clients that accept application/x-ndjson. Rows are written as they are
+     * read, so memory use does not depend on the size of the range.
+     */
+    @GetMapping(value = "/date-range", produces = NDJSON)
+    public void streamJobsByDateRange(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+                                      HttpServletResponse response) throws IOException {
+        writeNdjson(response, consumer -> jobService.streamJobsByDateRange(startDate, endDate, consumer));
+    }
+
+    /**
+     * Writes each job the producer hands to its consumer as one line of JSON
+     */
+    private void writeNdjson(HttpServletResponse response, Consumer<Consumer<JobSummary>> producer) throws IOException {
+        response.setContentType(NDJSON);
+        try (SequenceWriter writer = objectMapper.writerFor(JobSummary.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(response.getOutputStream())) {
+            producer.accept(job -> {
+                try {
+                    writer.write(job);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
     }
 }
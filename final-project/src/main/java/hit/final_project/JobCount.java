@@ -0,0 +1,7 @@
+package hit.final_project;
+
+/**
+ * Number of jobs with one status and job type combination
+ */
+public record JobCount(String status, String jobType, long count) {
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Data
 @NoArgsConstructor
@@ -16,4 +17,19 @@ public class JobCreateDTO {
     private LocalDateTime updatedAt;
     private String jobType;
     private String sensitiveData;
+    // optional client chosen UUID; a create repeated with the same uuid returns the first job
+    private UUID uuid;
+
+    public JobCreateDTO(String jobName, String status, LocalDateTime createdAt, LocalDateTime updatedAt,
+                        String jobType, String sensitiveData) {
+        this(jobName, status, createdAt, updatedAt, jobType, sensitiveData, null);
+    }
+
+    public Job toJob() {
+        Job job = new Job(jobName, status, createdAt, updatedAt, jobType, sensitiveData);
+        if (uuid != null) {
+            job.setUuid(uuid);
+        }
+        return job;
+    }
 }
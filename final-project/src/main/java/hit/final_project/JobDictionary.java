@@ -0,0 +1,215 @@
+package hit.final_project;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Small integer codes for job statuses and job types.
+ * <p>
+ * The jobs table stores status_id and job_type_id, which reference the
+ * job_statuses and job_types lookup tables. Both tables are held in memory
+ * here, so converting between names and codes never queries the database,
+ * and every job loaded shares the same String instance for each name.
+ * <p>
+ * Names stay open-ended: a name seen for the first time is registered when a
+ * job is written with it. Names registered by another instance are picked up
+ * on the next miss, at most once per app.jobs.dictionary.refresh-interval.
+ */
+@Component
+public class JobDictionary {
+    // never a row in either table, so a filter on an unknown name matches nothing
+    static final short UNKNOWN = -1;
+
+    private final Table statuses;
+    private final Table jobTypes;
+
+    @Autowired
+    public JobDictionary(JdbcTemplate jdbcTemplate,
+                         @Value("${app.jobs.dictionary.max-size:1000}") int maxSize,
+                         @Value("${app.jobs.dictionary.refresh-interval:PT10S}") Duration refreshInterval) {
+        if (maxSize < 1 || maxSize > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("app.jobs.dictionary.max-size must be between 1 and " + Short.MAX_VALUE);
+        }
+        this.statuses = new Table(jdbcTemplate, "job_statuses", "status", maxSize, refreshInterval);
+        this.jobTypes = new Table(jdbcTemplate, "job_types", "job type", maxSize, refreshInterval);
+    }
+
+    public Table statuses() {
+        return statuses;
+    }
+
+    public Table jobTypes() {
+        return jobTypes;
+    }
+
+    /**
+     * One lookup table. Reads go to an immutable snapshot; loading and
+     * registering replace the snapshot under the table's lock.
+     */
+    public static class Table {
+        private static final Logger logger = LoggerFactory.getLogger(JobDictionary.class);
+
+        private record Snapshot(Map<String, Short> codes, Map<Short, String> names) {
+        }
+
+        private final JdbcTemplate jdbcTemplate;
+        private final String table;
+        private final String description;
+        private final int maxSize;
+        private final long refreshIntervalNanos;
+        private volatile Snapshot snapshot;
+        private volatile long loadedAt;
+
+        Table(JdbcTemplate jdbcTemplate, String table, String description, int maxSize, Duration refreshInterval) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.table = table;
+            this.description = description;
+            this.maxSize = maxSize;
+            this.refreshIntervalNanos = refreshInterval.toNanos();
+        }
+
+        /**
+         * @return the code of the name, if it is registered
+         */
+        public Optional<Short> code(String name) {
+            Short code = current().codes().get(name);
+            if (code == null && refreshDue()) {
+                code = reload().codes().get(name);
+            }
+            return Optional.ofNullable(code);
+        }
+
+        public boolean contains(String name) {
+            return code(name).isPresent();
+        }
+
+        /**
+         * @return the canonical name for a code read from the database
+         */
+        public String name(short code) {
+            String name = current().names().get(code);
+            if (name == null) {
+                // registered by another instance since the last load
+                name = reload().names().get(code);
+            }
+            if (name == null) {
+                throw new IllegalStateException("Unknown " + description + " code " + code);
+            }
+            return name;
+        }
+
+        /**
+         * Registers the name if it is new. Must be called outside a transaction,
+         * so the new row is committed before any job refers to it.
+         * @return the canonical instance of the name
+         * @throws IllegalArgumentException if the table already holds app.jobs.dictionary.max-size names
+         */
+        public String register(String name) {
+            Short code = current().codes().get(name);
+            if (code != null) {
+                return current().names().get(code);
+            }
+            synchronized (this) {
+                for (int attempt = 0; ; attempt++) {
+                    Snapshot loaded = reload();
+                    code = loaded.codes().get(name);
+                    if (code != null) {
+                        return loaded.names().get(code);
+                    }
+                    if (loaded.codes().size() >= maxSize) {
+                        throw new IllegalArgumentException("Too many distinct values of " + description + ", cannot add " + name);
+                    }
+                    try {
+                        jdbcTemplate.update("INSERT INTO " + table + " (id, name) SELECT COALESCE(MAX(id), 0) + 1, ? FROM " + table, name);
+                        logger.info("Registered {} {}", description, name);
+                    } catch (DataIntegrityViolationException e) {
+                        // another instance took the same code or registered the same name
+                        if (attempt >= 2) {
+                            throw e;
+                        }
+                    }
+                }
+            }
+        }
+
+        private Snapshot current() {
+            Snapshot current = snapshot;
+            return current != null ? current : reload();
+        }
+
+        private boolean refreshDue() {
+            return System.nanoTime() - loadedAt > refreshIntervalNanos;
+        }
+
+        private synchronized Snapshot reload() {
+            Map<String, Short> codes = new HashMap<>();
+            Map<Short, String> names = new HashMap<>();
+            jdbcTemplate.query("SELECT id, name FROM " + table, rs -> {
+                short code = rs.getShort("id");
+                String name = rs.getString("name");
+                codes.put(name, code);
+                names.put(code, name);
+            });
+            Snapshot loaded = new Snapshot(Map.copyOf(codes), Map.copyOf(names));
+            snapshot = loaded;
+            loadedAt = System.nanoTime();
+            return loaded;
+        }
+    }
+
+    /**
+     * Maps Job.status to status_id. Created by Hibernate through the Spring bean container.
+     */
+    @Converter
+    public static class StatusConverter implements AttributeConverter<String, Short> {
+        private final JobDictionary dictionary;
+
+        public StatusConverter(JobDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public Short convertToDatabaseColumn(String status) {
+            return status == null ? null : dictionary.statuses().code(status).orElse(UNKNOWN);
+        }
+
+        @Override
+        public String convertToEntityAttribute(Short code) {
+            return code == null ? null : dictionary.statuses().name(code);
+        }
+    }
+
+    /**
+     * Maps Job.jobType to job_type_id
+     */
+    @Converter
+    public static class JobTypeConverter implements AttributeConverter<String, Short> {
+        private final JobDictionary dictionary;
+
+        public JobTypeConverter(JobDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public Short convertToDatabaseColumn(String jobType) {
+            return jobType == null ? null : dictionary.jobTypes().code(jobType).orElse(UNKNOWN);
+        }
+
+        @Override
+        public String convertToEntityAttribute(Short code) {
+            return code == null ? null : dictionary.jobTypes().name(code);
+        }
+    }
+}
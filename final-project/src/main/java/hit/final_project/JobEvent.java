@@ -0,0 +1,27 @@
+package hit.final_project;
+
+/**
+ * Published by JobService after a job was created, changed or deleted.
+ * previousStatus is only set for updates that changed the status.
+ */
+public record JobEvent(Type type, JobSummary job, String previousStatus) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    static JobEvent of(Type type, Job job, String previousStatus) {
+        JobSummary summary = new JobSummary(job.getId(), job.getUuid(), job.getJobName(), job.getStatus(),
+                job.getCreatedAt(), job.getUpdatedAt(), job.getJobType());
+        return new JobEvent(type, summary, previousStatus);
+    }
+
+    /**
+     * @return whether the event concerns a job with the given status (before or after the change)
+     * and job type; null filters match everything
+     */
+    boolean matches(String status, String jobType) {
+        boolean statusMatches = status == null || status.equals(job.status()) || status.equals(previousStatus);
+        return statusMatches && (jobType == null || jobType.equals(job.jobType()));
+    }
+}
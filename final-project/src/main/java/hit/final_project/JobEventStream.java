@@ -0,0 +1,254 @@
+package hit.final_project;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans JobEvents out to server-sent event subscribers.
+ * <p>
+ * Every event gets an id of the form {@code <epoch>-<sequence>} and is kept in a
+ * replay buffer of the last app.events.replay-size events, so a client that
+ * reconnects with Last-Event-ID receives what it missed. When the id is older
+ * than the buffer, or from before a restart, the client gets a "reset" event
+ * instead and should reload its state with a normal GET.
+ * <p>
+ * Each subscriber has a bounded queue drained by its own virtual thread, so a
+ * slow client never blocks the request that published the event. A subscriber
+ * whose queue overflows is disconnected and can resume with Last-Event-ID.
+ */
+@Component
+public class JobEventStream implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(JobEventStream.class);
+
+    /**
+     * One queued message: a job event, a reset notice, or a heartbeat comment (name null)
+     */
+    record Envelope(String id, String name, Object data) {
+    }
+
+    private static final Envelope HEARTBEAT = new Envelope(null, null, null);
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ArrayDeque<Envelope> replayBuffer = new ArrayDeque<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("job-events-", 0).factory());
+    private final int replaySize;
+    private final int subscriberBuffer;
+    private final Duration timeout;
+    private final Counter evictions;
+    private long sequence;
+
+    @Autowired
+    public JobEventStream(MeterRegistry meterRegistry,
+                          @Value("${app.events.replay-size:1000}") int replaySize,
+                          @Value("${app.events.subscriber-buffer:256}") int subscriberBuffer,
+                          @Value("${app.events.timeout:PT30M}") Duration timeout) {
+        this.replaySize = replaySize;
+        this.subscriberBuffer = subscriberBuffer;
+        this.timeout = timeout;
+        Gauge.builder("jobs.events.subscribers", subscribers, Set::size).register(meterRegistry);
+        this.evictions = Counter.builder("jobs.events.evicted")
+                .description("Subscribers disconnected because they could not keep up")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a subscription
+     * @param status only events for jobs with this status before or after the change, null for all
+     * @param jobType only events for jobs of this type, null for all
+     * @param lastEventId id of the last event the client received, null for a new subscription
+     */
+    public SseEmitter subscribe(String status, String jobType, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, status, jobType);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        synchronized (replayBuffer) {
+            // replay and registration happen under the publish lock, so no event is missed or sent twice
+            if (lastEventId != null) {
+                List<Envelope> missed = eventsSince(lastEventId);
+                if (missed == null) {
+                    subscriber.offer(new Envelope(null, "reset", "Events since " + lastEventId + " are no longer available"));
+                } else {
+                    missed.forEach(subscriber::offer);
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        logger.debug("Event subscriber added (status={}, jobType={}), {} subscribers", status, jobType, subscribers.size());
+        return emitter;
+    }
+
+    @EventListener
+    public void publish(JobEvent event) {
+        synchronized (replayBuffer) {
+            Envelope envelope = new Envelope(epoch + "-" + (++sequence), event.type().name().toLowerCase(), event);
+            replayBuffer.addLast(envelope);
+            if (replayBuffer.size() > replaySize) {
+                replayBuffer.removeFirst();
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(envelope);
+            }
+        }
+    }
+
+    /**
+     * Keeps idle connections open through proxies and detects clients that went away
+     */
+    @Scheduled(fixedDelayString = "${app.events.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(HEARTBEAT);
+        }
+    }
+
+    /**
+     * @return the buffered events after lastEventId, or null if some of them are no longer buffered
+     */
+    List<Envelope> eventsSince(String lastEventId) {
+        long lastSequence = parseSequence(lastEventId);
+        synchronized (replayBuffer) {
+            if (lastSequence < 0 || lastSequence > sequence
+                    || (lastSequence < sequence && sequenceOf(replayBuffer.peekFirst()) > lastSequence + 1)) {
+                return null;
+            }
+            List<Envelope> missed = new ArrayList<>();
+            for (Envelope envelope : replayBuffer) {
+                if (sequenceOf(envelope) > lastSequence) {
+                    missed.add(envelope);
+                }
+            }
+            return missed;
+        }
+    }
+
+    String lastEventId() {
+        synchronized (replayBuffer) {
+            return epoch + "-" + sequence;
+        }
+    }
+
+    private long parseSequence(String eventId) {
+        String prefix = epoch + "-";
+        if (!eventId.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private long sequenceOf(Envelope envelope) {
+        return envelope == null ? Long.MAX_VALUE : parseSequence(envelope.id());
+    }
+
+    @Override
+    public void destroy() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final String status;
+        private final String jobType;
+        private final BlockingQueue<Envelope> queue = new ArrayBlockingQueue<>(subscriberBuffer);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, String status, String jobType) {
+            this.emitter = emitter;
+            this.status = status;
+            this.jobType = jobType;
+        }
+
+        void offer(Envelope envelope) {
+            if (closed) {
+                return;
+            }
+            if (envelope.data() instanceof JobEvent event && !event.matches(status, jobType)) {
+                return;
+            }
+            if (envelope == HEARTBEAT && !queue.isEmpty()) {
+                return;
+            }
+            if (!queue.offer(envelope)) {
+                evictions.increment();
+                logger.warn("Disconnecting slow event subscriber after {} undelivered events", queue.size());
+                close();
+                // completing may wait for a send in progress, so it is left to a sender thread
+                senders.execute(emitter::complete);
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Envelope envelope;
+                while (!closed && (envelope = queue.poll()) != null) {
+                    send(envelope);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client went away
+                close();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // an event may have been queued after the last poll but before draining was reset
+            if (!closed && !queue.isEmpty() && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void send(Envelope envelope) throws IOException {
+            if (envelope.name() == null) {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+                return;
+            }
+            SseEmitter.SseEventBuilder event = SseEmitter.event().name(envelope.name()).data(envelope.data(), MediaType.APPLICATION_JSON);
+            if (envelope.id() != null) {
+                event.id(envelope.id());
+            }
+            emitter.send(event);
+        }
+
+        void close() {
+            closed = true;
+            queue.clear();
+            subscribers.remove(this);
+        }
+    }
+}
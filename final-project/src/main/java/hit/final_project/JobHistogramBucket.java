@@ -0,0 +1,24 @@
+package hit.final_project;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Jobs created within one time bucket, and how many of them failed
+ */
+public record JobHistogramBucket(LocalDateTime bucketStart, long total, long failed) {
+
+    /**
+     * Daily bucket, as produced by the GROUP BY day query
+     */
+    public JobHistogramBucket(LocalDate day, Long total, Long failed) {
+        this(day.atStartOfDay(), total, failed);
+    }
+
+    /**
+     * Hourly bucket, as produced by the GROUP BY day and hour query
+     */
+    public JobHistogramBucket(LocalDate day, Integer hour, Long total, Long failed) {
+        this(day.atTime(hour, 0), total, failed);
+    }
+}
@@ -0,0 +1,117 @@
+package hit.final_project;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Remembers which job was created for a client supplied UUID, so a retried
+ * create is answered with the original job instead of a second insert and hash.
+ * A bounded Caffeine map sits in front of the unique index on jobs.uuid; keys
+ * that fell out of it are found again through the index. Creates that are still
+ * running are tracked too, so a retry arriving while the first attempt is being
+ * hashed waits for that attempt.
+ * With the partitioned schema, where an index can only be unique per created_at,
+ * the job_keys table enforces the same uniqueness.
+ */
+@Component
+public class JobIdempotencyKeys {
+    static final String HEADER = "Idempotency-Key";
+
+    private final Cache<UUID, Long> createdJobs;
+    private final ConcurrentMap<UUID, CompletableFuture<Job>> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public JobIdempotencyKeys(MeterRegistry meterRegistry,
+                              @Value("${app.jobs.idempotency.cache-size:100000}") long cacheSize,
+                              @Value("${app.jobs.idempotency.ttl:PT24H}") Duration ttl) {
+        this.meterRegistry = meterRegistry;
+        this.createdJobs = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, createdJobs, "jobs.idempotency");
+    }
+
+    /**
+     * Resolves the UUID a create is keyed on.
+     * An Idempotency-Key that is a UUID is used as is, any other key is hashed
+     * into a name based UUID.
+     * @param key Idempotency-Key header, may be null
+     * @param bodyUuid uuid field of the request body, may be null
+     * @return the client's UUID, null when the client supplied neither
+     * @throws IllegalArgumentException if the header and the body name different UUIDs
+     */
+    static UUID resolve(String key, UUID bodyUuid) {
+        if (key == null || key.isBlank()) {
+            return bodyUuid;
+        }
+        UUID keyUuid;
+        try {
+            keyUuid = UUID.fromString(key);
+        } catch (IllegalArgumentException e) {
+            keyUuid = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+        }
+        if (bodyUuid != null && !bodyUuid.equals(keyUuid)) {
+            throw new IllegalArgumentException("Idempotency-Key does not match the uuid in the body");
+        }
+        return keyUuid;
+    }
+
+    public Long createdJobId(UUID uuid) {
+        return createdJobs.getIfPresent(uuid);
+    }
+
+    public void remember(UUID uuid, Long id) {
+        createdJobs.put(uuid, id);
+    }
+
+    /**
+     * Runs the create unless one for the same UUID is already running,
+     * in which case the caller gets that create's future
+     */
+    public CompletableFuture<Job> deduplicate(UUID uuid, Supplier<CompletableFuture<Job>> create) {
+        CompletableFuture<Job> pending = new CompletableFuture<>();
+        CompletableFuture<Job> running = inFlight.putIfAbsent(uuid, pending);
+        if (running != null) {
+            replayed("in-flight");
+            return running;
+        }
+        try {
+            create.get().whenComplete((job, e) -> {
+                inFlight.remove(uuid, pending);
+                if (e != null) {
+                    pending.completeExceptionally(e);
+                } else {
+                    pending.complete(job);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(uuid, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        return pending;
+    }
+
+    /**
+     * Counts a create answered with an existing job, by where the job was found
+     */
+    public void replayed(String source) {
+        meterRegistry.counter("jobs.create.replays", "source", source).increment();
+    }
+}
@@ -0,0 +1,15 @@
+package hit.final_project;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Single job lookups, implemented in JobLookupRepositoryImpl so they can be
+ * routed to one partition of the partitioned schema
+ */
+public interface JobLookupRepository {
+
+    Optional<Job> findById(Long id);
+
+    Optional<Job> findByUuid(UUID uuid);
+}
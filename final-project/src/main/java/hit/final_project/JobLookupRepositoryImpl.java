@@ -0,0 +1,53 @@
+package hit.final_project;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Looks jobs up by id or uuid. On the partitioned schema (app.jobs.partitioned)
+ * the primary key is (id, created_at), so a lookup by id alone would probe the
+ * index of every partition. The created_at of the job is read from job_keys
+ * first; PostgreSQL prunes on that value when the query starts and reads a
+ * single partition.
+ */
+@Transactional(readOnly = true)
+public class JobLookupRepositoryImpl implements JobLookupRepository {
+    private static final String BY_ID = "SELECT j.* FROM jobs j WHERE j.id = :id"
+            + " AND j.created_at = (SELECT k.created_at FROM job_keys k WHERE k.id = :id)";
+    private static final String BY_UUID = "SELECT j.* FROM jobs j WHERE j.uuid = :uuid"
+            + " AND j.created_at = (SELECT k.created_at FROM job_keys k WHERE k.uuid = :uuid)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.jobs.partitioned:false}")
+    private boolean partitioned;
+
+    @Override
+    public Optional<Job> findById(Long id) {
+        if (!partitioned) {
+            return Optional.ofNullable(entityManager.find(Job.class, id));
+        }
+        return single(entityManager.createNativeQuery(BY_ID, Job.class).setParameter("id", id).getResultList());
+    }
+
+    @Override
+    public Optional<Job> findByUuid(UUID uuid) {
+        if (!partitioned) {
+            return single(entityManager.createQuery("SELECT j FROM Job j WHERE j.uuid = :uuid", Job.class)
+                    .setParameter("uuid", uuid)
+                    .getResultList());
+        }
+        return single(entityManager.createNativeQuery(BY_UUID, Job.class).setParameter("uuid", uuid).getResultList());
+    }
+
+    private static Optional<Job> single(List<?> jobs) {
+        return jobs.stream().map(Job.class::cast).findFirst();
+    }
+}
@@ -0,0 +1,18 @@
+package hit.final_project;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Body of PATCH /api/jobs/{id}: null fields are left unchanged
+ */
+@Data
+@NoArgsConstructor
+public class JobPatchDTO {
+    private String jobName;
+    private String status;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
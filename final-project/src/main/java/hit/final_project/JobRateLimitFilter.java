@@ -0,0 +1,144 @@
+package hit.final_project;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Throttles /api/jobs requests in the security filter chain.
+ * First the client's token bucket for the request's tier is checked, answering
+ * 429 when it is empty. Then the request needs a slot from the adaptive
+ * concurrency limit, answering 503 when the service is saturated. Both carry
+ * Retry-After. Clients are identified by the X-API-Key header, falling back to
+ * the remote address (which honours X-Forwarded-For only when
+ * server.forward-headers-strategy is set). Keys are not authenticated here, so
+ * the per-client budgets keep cooperating pipelines apart and the concurrency
+ * limit is what protects the connection pool.
+ * Not a bean, so it runs only in the security chain and not a second time as a servlet filter.
+ */
+public class JobRateLimitFilter extends OncePerRequestFilter {
+    static final String API_KEY_HEADER = "X-API-Key";
+    private static final String PREFIX = "/api/jobs";
+    private static final String EVENTS = PREFIX + "/events";
+    private static final Set<String> LIST_PATHS = Set.of(PREFIX, PREFIX + "/", PREFIX + "/search", PREFIX + "/stats",
+            PREFIX + "/date-range");
+
+    private final ClientRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final MeterRegistry meterRegistry;
+    private final boolean concurrencyEnabled;
+
+    public JobRateLimitFilter(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                              MeterRegistry meterRegistry, boolean concurrencyEnabled) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.meterRegistry = meterRegistry;
+        this.concurrencyEnabled = concurrencyEnabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = path(request);
+        return !path.equals(PREFIX) && !path.startsWith(PREFIX + "/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = path(request);
+        ClientRateLimiter.Tier tier = tier(request.getMethod(), path);
+        Duration wait = rateLimiter.tryAcquire(client(request), tier);
+        if (!wait.isZero()) {
+            reject(response, tier, HttpStatus.TOO_MANY_REQUESTS, wait);
+            return;
+        }
+        // event streams stay open for minutes and hold no connection while idle
+        if (!concurrencyEnabled || path.equals(EVENTS)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            reject(response, tier, HttpStatus.SERVICE_UNAVAILABLE, Duration.ofSeconds(1));
+            return;
+        }
+        long start = System.nanoTime();
+        // streamed lists take as long as they are large, so only reads and writes feed the limit
+        boolean sample = tier != ClientRateLimiter.Tier.LIST;
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                concurrencyLimiter.release(start, sample);
+            }
+        };
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    static ClientRateLimiter.Tier tier(String method, String path) {
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            return ClientRateLimiter.Tier.WRITE;
+        }
+        if (LIST_PATHS.contains(path) || path.startsWith(PREFIX + "/status/") || path.startsWith(PREFIX + "/jobType/")) {
+            return ClientRateLimiter.Tier.LIST;
+        }
+        return ClientRateLimiter.Tier.READ;
+    }
+
+    private static String client(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        return apiKey != null && !apiKey.isBlank() ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private void reject(HttpServletResponse response, ClientRateLimiter.Tier tier, HttpStatus status, Duration retryAfter)
+            throws IOException {
+        meterRegistry.counter("jobs.ratelimit.rejected", "tier", tier.name().toLowerCase(), "status", String.valueOf(status.value()))
+                .increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+        response.sendError(status.value(), status.getReasonPhrase());
+    }
+
+    private record ReleasingListener(Runnable release) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
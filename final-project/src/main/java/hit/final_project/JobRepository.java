@@ -1,16 +1,98 @@
 package hit.final_project;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface JobRepository extends JpaRepository<Job, Long> {
-    List<Job> findByStatus(String status);
-    List<Job> findByJobType(String jobType);
-    @Query("SELECT j FROM Job j WHERE j.createdAt BETWEEN :startDate AND :endDate")
-    List<Job> findByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+public interface JobRepository extends JpaRepository<Job, Long>, JobSearchRepository, JobLookupRepository {
+    String SUMMARY = "new hit.final_project.JobSummary(j.id, j.uuid, j.jobName, j.status, j.createdAt, j.updatedAt, j.jobType)";
+    String FAILED_COUNT = "SUM(CASE WHEN j.status = 'FAILED' THEN 1 ELSE 0 END)";
+    String CREATED_DAY = "cast(j.createdAt as LocalDate)";
+    // lock timeout value Hibernate renders as SKIP LOCKED (LockOptions.SKIP_LOCKED)
+    String SKIP_LOCKED = "-2";
 
+    // JobLookupRepositoryImpl answers it instead of SimpleJpaRepository
+    @Override
+    Optional<Job> findById(Long id);
+
+    List<JobSummary> findByStatus(String status);
+    List<JobSummary> findByJobType(String jobType);
+    @Query("SELECT " + SUMMARY + " FROM Job j WHERE j.createdAt BETWEEN :startDate AND :endDate")
+    List<JobSummary> findByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @Query("SELECT new hit.final_project.JobCount(j.status, j.jobType, COUNT(j)) FROM Job j GROUP BY j.status, j.jobType")
+    List<JobCount> countByStatusAndJobType();
+
+    @Query("SELECT new hit.final_project.JobHistogramBucket(" + CREATED_DAY + ", COUNT(j), " + FAILED_COUNT + ") " +
+            "FROM Job j WHERE j.createdAt >= :from AND j.createdAt < :to " +
+            "GROUP BY " + CREATED_DAY + " ORDER BY " + CREATED_DAY)
+    List<JobHistogramBucket> dailyHistogram(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT new hit.final_project.JobHistogramBucket(" + CREATED_DAY + ", extract(hour from j.createdAt), COUNT(j), " + FAILED_COUNT + ") " +
+            "FROM Job j WHERE j.createdAt >= :from AND j.createdAt < :to " +
+            "GROUP BY " + CREATED_DAY + ", extract(hour from j.createdAt) " +
+            "ORDER BY " + CREATED_DAY + ", extract(hour from j.createdAt)")
+    List<JobHistogramBucket> hourlyHistogram(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Keyset page: the next {@code limit} jobs whose id is greater than the cursor
+     */
+    List<JobSummary> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    /**
+     * Streams every job in id order, pulling rows from the driver in chunks
+     * of the configured fetch size instead of materializing the whole table.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500")
+    })
+    @Query("SELECT " + SUMMARY + " FROM Job j ORDER BY j.id")
+    Stream<JobSummary> streamAllOrderById();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500")
+    })
+    @Query("SELECT " + SUMMARY + " FROM Job j WHERE j.createdAt BETWEEN :startDate AND :endDate")
+    Stream<JobSummary> streamByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * Locks the oldest jobs with the status, skipping rows other transactions
+     * have locked, so concurrent claimers each get different jobs without waiting
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints({
+            @QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = SKIP_LOCKED)
+    })
+    @Query("SELECT j FROM Job j WHERE j.status = :status ORDER BY j.createdAt, j.id")
+    List<Job> lockOldestByStatus(@Param("status") String status, Limit limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints({
+            @QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = SKIP_LOCKED)
+    })
+    @Query("SELECT j FROM Job j WHERE j.status = :status AND j.jobType = :jobType ORDER BY j.createdAt, j.id")
+    List<Job> lockOldestByStatusAndJobType(@Param("status") String status, @Param("jobType") String jobType, Limit limit);
+
+    /**
+     * Locks jobs with the status whose lease ended before the given time, skipping locked rows
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints({
+            @QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = SKIP_LOCKED)
+    })
+    @Query("SELECT j FROM Job j WHERE j.status = :status AND j.leaseExpiresAt < :now ORDER BY j.leaseExpiresAt")
+    List<Job> lockExpiredLeases(@Param("status") String status, @Param("now") LocalDateTime now, Limit limit);
 }
@@ -0,0 +1,248 @@
+package hit.final_project;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes expired jobs from the live table on the app.retention.cron schedule.
+ * <p>
+ * A job expires app.retention.max-age after it was created, if its status is one
+ * of app.retention.statuses (any status when empty). Expired jobs are either
+ * moved to jobs_archive or deleted (app.retention.mode). Each chunk of
+ * app.retention.batch-size rows is locked, copied and deleted in its own short
+ * transaction, with a pause between chunks, so live traffic is never blocked for long.
+ * <p>
+ * With app.retention.partitioned (the "partitioned" profile on PostgreSQL) monthly
+ * partitions are also created ahead of time, and in delete mode without a status
+ * policy whole expired months are dropped instead of deleted row by row.
+ */
+@Service
+public class JobRetentionService {
+    private static final Logger logger = LoggerFactory.getLogger(JobRetentionService.class);
+    private static final String COLUMNS = "id, uuid, job_name, status_id, created_at, updated_at, job_type_id, sensitive_data, version";
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("jobs_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    // what JobService needs to announce a deleted job
+    private static final String SUMMARY_COLUMNS = "id, uuid, job_name, status_id, created_at, updated_at, job_type_id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobService jobService;
+    private final JobDictionary jobDictionary;
+
+    @Value("${app.retention.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.retention.max-age:P90D}")
+    private Duration maxAge;
+
+    @Value("${app.retention.statuses:SUCCESS,FAILED}")
+    private List<String> statuses;
+
+    @Value("${app.retention.mode:archive}")
+    private String mode;
+
+    @Value("${app.retention.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.retention.pause:PT0.1S}")
+    private Duration pause;
+
+    @Value("${app.retention.partitioned:false}")
+    private boolean partitioned;
+
+    @Value("${app.retention.partitions-ahead:3}")
+    private int partitionsAhead;
+
+    @Autowired
+    public JobRetentionService(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               JobService jobService, JobDictionary jobDictionary) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobService = jobService;
+        this.jobDictionary = jobDictionary;
+    }
+
+    @Scheduled(cron = "${app.retention.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+        if (partitioned) {
+            createPartitionsAhead();
+        }
+        purgeJobsCreatedBefore(LocalDateTime.now().minus(maxAge));
+    }
+
+    /**
+     * Archives or deletes every job created before the cutoff whose status the policy covers
+     * @param cutoff jobs created before this are expired
+     * @return number of jobs removed from the live table
+     */
+    public long purgeJobsCreatedBefore(LocalDateTime cutoff) {
+        List<String> policyStatuses = statuses.stream().filter(status -> !status.isBlank()).toList();
+        // statuses no job ever had cannot match
+        List<Short> policyStatusIds = policyStatuses.stream().flatMap(status -> jobDictionary.statuses().code(status).stream()).toList();
+        boolean archive = !"delete".equalsIgnoreCase(mode);
+        long removed = 0;
+        if (partitioned && !archive && policyStatuses.isEmpty()) {
+            removed += dropPartitionsBefore(cutoff);
+        }
+        if (!policyStatuses.isEmpty() && policyStatusIds.isEmpty()) {
+            logger.info("Retention found no jobs with statuses {}", policyStatuses);
+            return removed;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("cutoff", cutoff)
+                .addValue("statusIds", policyStatusIds)
+                .addValue("limit", batchSize);
+        String select = "SELECT " + SUMMARY_COLUMNS + " FROM jobs WHERE created_at < :cutoff"
+                + (policyStatusIds.isEmpty() ? "" : " AND status_id IN (:statusIds)")
+                + " AND id > :afterId ORDER BY id LIMIT :limit FOR UPDATE";
+        long afterId = 0;
+        while (true) {
+            params.addValue("afterId", afterId);
+            List<Job> chunk = transactionTemplate.execute(status -> {
+                List<Job> expired = jdbcTemplate.query(select, params, this::removedJob);
+                if (!expired.isEmpty()) {
+                    MapSqlParameterSource ids = new MapSqlParameterSource()
+                            .addValue("ids", expired.stream().map(Job::getId).toList())
+                            .addValue("cutoff", cutoff)
+                            .addValue("now", LocalDateTime.now());
+                    if (archive) {
+                        jdbcTemplate.update("INSERT INTO jobs_archive (" + COLUMNS + ", archived_at) SELECT " + COLUMNS
+                                + ", :now FROM jobs WHERE id IN (:ids) AND created_at < :cutoff", ids);
+                    }
+                    // the cutoff lets PostgreSQL skip the partitions of newer months
+                    jdbcTemplate.update("DELETE FROM jobs WHERE id IN (:ids) AND created_at < :cutoff", ids);
+                }
+                return expired;
+            });
+            if (chunk.isEmpty()) {
+                break;
+            }
+            removed += chunk.size();
+            afterId = chunk.get(chunk.size() - 1).getId();
+            jobService.jobsDeleted(chunk);
+            if (chunk.size() < batchSize) {
+                break;
+            }
+            if (!pauseBetweenChunks()) {
+                break;
+            }
+        }
+        logger.info("Retention {} {} jobs created before {}", archive ? "archived" : "deleted", removed, cutoff);
+        return removed;
+    }
+
+    /**
+     * Reads a removed row as far as JobService needs it to forget and announce the job
+     */
+    private Job removedJob(ResultSet rs, int rowNum) throws SQLException {
+        Job job = new Job(rs.getString("job_name"), name(jobDictionary.statuses(), rs.getObject("status_id", Short.class)),
+                rs.getObject("created_at", LocalDateTime.class), rs.getObject("updated_at", LocalDateTime.class),
+                name(jobDictionary.jobTypes(), rs.getObject("job_type_id", Short.class)));
+        job.setId(rs.getLong("id"));
+        job.setUuid(rs.getObject("uuid", UUID.class));
+        return job;
+    }
+
+    private static String name(JobDictionary.Table table, Short code) {
+        return code == null ? null : table.name(code);
+    }
+
+    private boolean pauseBetweenChunks() {
+        try {
+            Thread.sleep(pause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Creates the monthly partitions from this month up to app.retention.partitions-ahead months ahead
+     */
+    void createPartitionsAhead() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= partitionsAhead; i++, month = month.plusMonths(1)) {
+            String sql = "CREATE TABLE IF NOT EXISTS jobs_p" + month.format(PARTITION_SUFFIX) + " PARTITION OF jobs FOR VALUES FROM ('"
+                    + month.atStartOfDay() + "') TO ('" + month.plusMonths(1).atStartOfDay() + "')";
+            try {
+                jdbcTemplate.getJdbcTemplate().execute(sql);
+            } catch (DataAccessException e) {
+                // e.g. rows for that month already sit in the default partition
+                logger.warn("Could not create partition for {}: {}", month, e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drops the monthly partitions that end before the cutoff. Each one is detached
+     * first, so its jobs are gone from the table at once; they are then read from the
+     * detached table a chunk at a time, for JobService to forget and announce, and
+     * their keys are removed from job_keys, which no trigger does for a dropped table.
+     */
+    private long dropPartitionsBefore(LocalDateTime cutoff) {
+        List<String> partitions = jdbcTemplate.getJdbcTemplate().queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = 'jobs'", String.class);
+        long dropped = 0;
+        for (String partition : partitions) {
+            Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            LocalDate end = LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), 1).plusMonths(1);
+            if (end.atStartOfDay().isAfter(cutoff)) {
+                continue;
+            }
+            jdbcTemplate.getJdbcTemplate().execute("ALTER TABLE jobs DETACH PARTITION " + partition);
+            long rows = forgetDetached(partition);
+            jdbcTemplate.getJdbcTemplate().execute("DROP TABLE " + partition);
+            logger.info("Dropped partition {} with {} jobs", partition, rows);
+            dropped += rows;
+        }
+        return dropped;
+    }
+
+    private long forgetDetached(String partition) {
+        String select = "SELECT " + SUMMARY_COLUMNS + " FROM " + partition + " WHERE id > :afterId ORDER BY id LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("limit", batchSize);
+        long rows = 0;
+        long afterId = 0;
+        while (true) {
+            params.addValue("afterId", afterId);
+            List<Job> chunk = jdbcTemplate.query(select, params, this::removedJob);
+            if (chunk.isEmpty()) {
+                return rows;
+            }
+            jdbcTemplate.update("DELETE FROM job_keys WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk.stream().map(Job::getId).toList()));
+            jobService.jobsDeleted(chunk);
+            rows += chunk.size();
+            afterId = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+}
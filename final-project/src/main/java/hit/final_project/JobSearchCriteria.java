@@ -0,0 +1,48 @@
+package hit.final_project;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters and ordering of GET /api/jobs/search, bound from the query parameters.
+ * Null filters are not applied; createdFrom is inclusive and createdTo exclusive.
+ */
+@Data
+@NoArgsConstructor
+public class JobSearchCriteria {
+    public enum SortField {
+        ID("id"), CREATED_AT("createdAt");
+
+        private final String parameter;
+
+        SortField(String parameter) {
+            this.parameter = parameter;
+        }
+
+        /**
+         * @param parameter value of the sort request parameter
+         * @throws IllegalArgumentException if it names no sort field
+         */
+        public static SortField fromParameter(String parameter) {
+            for (SortField field : values()) {
+                if (field.parameter.equals(parameter)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown sort field " + parameter);
+        }
+    }
+
+    private String status;
+    private String jobType;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+    private String namePrefix;
+    private SortField sort = SortField.ID;
+    private boolean descending;
+}
@@ -0,0 +1,33 @@
+package hit.final_project;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position in a search result: the sort value and id of the last job returned.
+ * Sent to clients as an opaque string.
+ */
+public record JobSearchCursor(LocalDateTime createdAt, Long id) {
+
+    static JobSearchCursor after(JobSummary job, JobSearchCriteria.SortField sort) {
+        return new JobSearchCursor(sort == JobSearchCriteria.SortField.CREATED_AT ? job.createdAt() : null, job.id());
+    }
+
+    String encode() {
+        String value = (createdAt == null ? "" : createdAt.toString()) + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode()}
+     */
+    static JobSearchCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",", 2);
+            return new JobSearchCursor(parts[0].isEmpty() ? null : LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
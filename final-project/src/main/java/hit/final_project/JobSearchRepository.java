@@ -0,0 +1,20 @@
+package hit.final_project;
+
+import java.util.List;
+
+/**
+ * Multi-criteria job search, implemented with the Criteria API in JobSearchRepositoryImpl
+ */
+public interface JobSearchRepository {
+
+    /**
+     * One keyset page of jobs matching all given criteria
+     * @param after position after which the page starts, null for the first page
+     */
+    List<JobSummary> search(JobSearchCriteria criteria, JobSearchCursor after, int limit);
+
+    /**
+     * Counts matching jobs, but stops at cap + 1 so the cost is bounded on large results
+     */
+    long countUpTo(JobSearchCriteria criteria, int cap);
+}
@@ -0,0 +1,122 @@
+package hit.final_project;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaSubQuery;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the search query from the criteria that are present.
+ * Predicates are plain equality, range and prefix comparisons on indexed columns,
+ * so status or job type plus a created_at range and order are served by the
+ * (status, created_at) and (job_type, created_at) indexes, and a name prefix by
+ * a LIKE 'prefix%' the name index can answer.
+ */
+public class JobSearchRepositoryImpl implements JobSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<JobSummary> search(JobSearchCriteria criteria, JobSearchCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<JobSummary> query = cb.createQuery(JobSummary.class);
+        Root<Job> job = query.from(Job.class);
+        query.select(cb.construct(JobSummary.class, job.get("id"), job.get("uuid"), job.get("jobName"), job.get("status"),
+                job.get("createdAt"), job.get("updatedAt"), job.get("jobType")));
+
+        List<Predicate> predicates = filters(cb, job, criteria);
+        Path<Long> id = job.get("id");
+        boolean descending = criteria.isDescending();
+        if (criteria.getSort() == JobSearchCriteria.SortField.CREATED_AT) {
+            Path<LocalDateTime> createdAt = job.get("createdAt");
+            // jobs without a creation time have no place in this order
+            predicates.add(cb.isNotNull(createdAt));
+            if (after != null) {
+                predicates.add(keyset(cb, createdAt, id, after, descending));
+            }
+            query.orderBy(descending ? cb.desc(createdAt) : cb.asc(createdAt), descending ? cb.desc(id) : cb.asc(id));
+        } else {
+            if (after != null) {
+                predicates.add(descending ? cb.lessThan(id, after.id()) : cb.greaterThan(id, after.id()));
+            }
+            query.orderBy(descending ? cb.desc(id) : cb.asc(id));
+        }
+        query.where(predicates.toArray(Predicate[]::new));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * SELECT count(*) FROM (SELECT id ... LIMIT cap + 1): the database stops
+     * reading at cap + 1 matches and returns a single number.
+     */
+    @Override
+    public long countUpTo(JobSearchCriteria criteria, int cap) {
+        HibernateCriteriaBuilder cb = (HibernateCriteriaBuilder) entityManager.getCriteriaBuilder();
+        JpaCriteriaQuery<Long> query = cb.createQuery(Long.class);
+        JpaSubQuery<Long> matches = query.subquery(Long.class);
+        Root<Job> job = matches.from(Job.class);
+        Path<Long> id = job.get("id");
+        // columns of a subquery in the from clause need a name
+        id.alias("id");
+        matches.select(id);
+        matches.where(filters(cb, job, criteria).toArray(Predicate[]::new));
+        matches.fetch(cap + 1);
+        query.from(matches);
+        query.select(cb.count());
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private List<Predicate> filters(CriteriaBuilder cb, Root<Job> job, JobSearchCriteria criteria) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (criteria.getStatus() != null) {
+            predicates.add(cb.equal(job.get("status"), criteria.getStatus()));
+        }
+        if (criteria.getJobType() != null) {
+            predicates.add(cb.equal(job.get("jobType"), criteria.getJobType()));
+        }
+        if (criteria.getCreatedFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(job.get("createdAt"), criteria.getCreatedFrom()));
+        }
+        if (criteria.getCreatedTo() != null) {
+            predicates.add(cb.lessThan(job.get("createdAt"), criteria.getCreatedTo()));
+        }
+        if (criteria.getNamePrefix() != null && !criteria.getNamePrefix().isEmpty()) {
+            predicates.add(cb.like(job.get("jobName"), escapeLike(criteria.getNamePrefix()) + "%", '\\'));
+        }
+        return predicates;
+    }
+
+    /**
+     * (createdAt, id) strictly after the cursor. The redundant bound on createdAt
+     * alone is what lets the database start the index scan at the cursor.
+     */
+    private Predicate keyset(CriteriaBuilder cb, Path<LocalDateTime> createdAt, Path<Long> id,
+                             JobSearchCursor after, boolean descending) {
+        if (after.createdAt() == null) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (descending) {
+            return cb.and(cb.lessThanOrEqualTo(createdAt, after.createdAt()),
+                    cb.or(cb.lessThan(createdAt, after.createdAt()),
+                            cb.and(cb.equal(createdAt, after.createdAt()), cb.lessThan(id, after.id()))));
+        }
+        return cb.and(cb.greaterThanOrEqualTo(createdAt, after.createdAt()),
+                cb.or(cb.greaterThan(createdAt, after.createdAt()),
+                        cb.and(cb.equal(createdAt, after.createdAt()), cb.greaterThan(id, after.id()))));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,20 @@
+package hit.final_project;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response of GET /api/jobs/search.
+ * nextCursor is null on the last page. count is only set when requested;
+ * countIsLowerBound means there are at least that many matches.
+ */
+@Data
+@NoArgsConstructor
+public class JobSearchResult {
+    private List<JobSummary> jobs;
+    private String nextCursor;
+    private Long count;
+    private boolean countIsLowerBound;
+}
@@ -1,44 +1,165 @@
 package hit.final_project;
 
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static java.util.prefs.Preferences.MAX_NAME_LENGTH;
 
 @Service
+@Timed(value = "jobs.service", histogram = true)
 public class JobService {
     private static final Logger logger = LoggerFactory.getLogger(JobService.class);
+    static final String PENDING = "PENDING";
+    static final String RUNNING = "RUNNING";
     private final JobRepository jobRepository;
-    private final BCryptPasswordEncoder sensitiveDataEncoder;
+    private final SensitiveDataHasher sensitiveDataHasher;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Executor taskExecutor;
+    private final JobCache jobCache;
+    private final JobStatsCounter jobStatsCounter;
+    private final LogSampler logSampler;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JobIdempotencyKeys idempotencyKeys;
+    private final JobWriteBehindBuffer writeBehind;
+    private final JobDictionary jobDictionary;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.jobs.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${app.jobs.page.max-size:1000}")
+    private int maxPageSize;
+
+    @Value("${app.jobs.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    @Value("${app.jobs.batch.hash-wait:PT30S}")
+    private Duration batchHashWait;
+
+    @Value("${app.jobs.search.count-cap:10000}")
+    private int searchCountCap;
+
+    @Value("${app.stats.histogram.max-buckets:1000}")
+    private int maxHistogramBuckets;
+
+    @Value("${app.jobs.claim.max-limit:100}")
+    private int maxClaimLimit;
+
+    @Value("${app.jobs.claim.lease:PT5M}")
+    private Duration defaultLease;
+
+    // leases are granted and expired by this clock
+    private Clock clock = Clock.systemDefaultZone();
 
     /**
      * constructor-based Dependency Injection (DI)
      * @param jobRepository
      */
     @Autowired
-    public JobService(JobRepository jobRepository, BCryptPasswordEncoder sensitiveDataEncoder) {
+    public JobService(JobRepository jobRepository, SensitiveDataHasher sensitiveDataHasher,
+                      PlatformTransactionManager transactionManager,
+                      @Qualifier("applicationTaskExecutor") Executor taskExecutor, JobCache jobCache,
+                      JobStatsCounter jobStatsCounter, LogSampler logSampler, ApplicationEventPublisher eventPublisher,
+                      JobIdempotencyKeys idempotencyKeys, JobWriteBehindBuffer writeBehind, JobDictionary jobDictionary) {
         this.jobRepository = jobRepository;
-        this.sensitiveDataEncoder = sensitiveDataEncoder;
+        this.sensitiveDataHasher = sensitiveDataHasher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.taskExecutor = taskExecutor;
+        this.jobCache = jobCache;
+        this.jobStatsCounter = jobStatsCounter;
+        this.logSampler = logSampler;
+        this.eventPublisher = eventPublisher;
+        this.idempotencyKeys = idempotencyKeys;
+        this.writeBehind = writeBehind;
+        this.jobDictionary = jobDictionary;
     }
 
     /**
-     * Retrieves all jobs
+     * Retrieves one keyset page of jobs ordered by id
+     * @param afterId cursor - id of the last job of the previous page, null for the first page
+     * @param limit requested page size, null for the default; capped at the configured maximum
      * @return list of jobs
      */
-    public List<Job> getAllJobs() {
-        logger.debug("Fetching all jobs");
-        List<Job> allJobs = jobRepository.findAll();
-        logger.debug("Found {} jobs", allJobs.size());
-        logger.debug(allJobs.toString());
-//        return jobRepository.findAll();
-        return allJobs;
+    @Transactional(readOnly = true)
+    public List<JobSummary> getJobsPage(Long afterId, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        List<JobSummary> page = jobRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId, Limit.of(pageSize));
+        logResult("page", afterId, page);
+        return writeBehind.overlay(page);
+    }
+
+    /**
+     * Resolves the effective page size for a request
+     * @param limit requested page size, null for the default
+     * @return page size between 1 and the configured maximum
+     */
+    public int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    /**
+     * Passes every job to the consumer, one row at a time, in id order.
+     * Rows are read as JobSummary projections, so nothing accumulates in
+     * the persistence context however large the table is.
+     * @param consumer receives each job
+     */
+    @Transactional(readOnly = true)
+    public void streamAllJobs(Consumer<JobSummary> consumer) {
+        logger.debug("Streaming all jobs");
+        try (Stream<JobSummary> jobs = jobRepository.streamAllOrderById()) {
+            jobs.forEach(writeBehind.overlay(consumer));
+        }
     }
 
     /**
@@ -47,7 +168,266 @@ public class JobService {
      * @return saved job if successful
      */
     public Job createJob(Job job) {
+        try {
+            return createJobAsync(job).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Saves a new job without holding the calling thread while its sensitive
+     * data is hashed. Validation happens immediately and throws on the caller;
+     * hashing runs on the hashing pool and the insert on the task executor.
+     * Throws RejectedExecutionException on the caller when the hashing queue is full.
+     * @param job
+     * @return future completed with the saved job
+     */
+    public CompletableFuture<Job> createJobAsync(Job job) {
+        validateNewJob(job);
+        return sensitiveDataHasher.hashAsync(job.getSensitiveData())
+                .thenApplyAsync(encryptedData -> {
+                    job.setSensitiveData(encryptedData);
+                    Job savedJob = jobRepository.save(job);
+                    jobCache.invalidateCreated(savedJob);
+                    jobStatsCounter.created(savedJob.getStatus(), savedJob.getJobType());
+                    eventPublisher.publishEvent(JobEvent.of(JobEvent.Type.CREATED, savedJob, null));
+                    return savedJob;
+                }, taskExecutor);
+    }
+
+    /**
+     * Saves a new job keyed on a client supplied UUID. If a job with that UUID
+     * already exists, or is being created right now, that job is returned and
+     * nothing is hashed or inserted, so clients can safely retry a create.
+     * @param job
+     * @param clientUuid UUID chosen by the client, null to create unconditionally
+     * @return future completed with the saved or the existing job
+     */
+    public CompletableFuture<Job> createJobAsync(Job job, UUID clientUuid) {
+        if (clientUuid == null) {
+            return createJobAsync(job);
+        }
+        job.setUuid(clientUuid);
+        return idempotencyKeys.deduplicate(clientUuid, () -> findCreatedJob(clientUuid)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> createJobAsync(job)
+                        .thenApply(savedJob -> {
+                            idempotencyKeys.remember(clientUuid, savedJob.getId());
+                            return savedJob;
+                        })
+                        .exceptionally(e -> {
+                            // another instance inserted the same uuid first
+                            if (e.getCause() instanceof DataIntegrityViolationException) {
+                                Optional<Job> existing = findCreatedJob(clientUuid);
+                                if (existing.isPresent()) {
+                                    return existing.get();
+                                }
+                            }
+                            throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                        })));
+    }
+
+    /**
+     * Looks up the job created for a client UUID, by the id remembered in memory
+     * first and then through the unique uuid index, both on the primary.
+     * Not read through the job cache, which leaves out the sensitive data hash
+     * the first response carried.
+     */
+    private Optional<Job> findCreatedJob(UUID uuid) {
+        Long id = idempotencyKeys.createdJobId(uuid);
+        if (id != null) {
+            Optional<Job> job = writeBehind.find(id).or(() -> onPrimary(() -> jobRepository.findById(id)));
+            if (job.isPresent()) {
+                idempotencyKeys.replayed("memory");
+                return job;
+            }
+        }
+        Optional<Job> stored = onPrimary(() -> jobRepository.findByUuid(uuid));
+        stored.ifPresent(job -> {
+            idempotencyKeys.remember(uuid, job.getId());
+            idempotencyKeys.replayed("database");
+        });
+        return stored;
+    }
+
+    /**
+     * Saves many new jobs, validating each record on its own.
+     * Valid records are written in chunks of app.jobs.batch.chunk-size, one
+     * transaction per chunk, so Hibernate can send them as JDBC batches.
+     * An invalid record, or a chunk the database rejects, is reported in the
+     * result and does not abort the rest of the batch.
+     * Records with a uuid that was already used are replayed with the id of
+     * the existing job and neither hashed nor inserted again.
+     * If the hashing queue stays full for app.jobs.batch.hash-wait, the batch
+     * stops there: the chunks saved so far are kept and the remaining records
+     * are reported as rejected, so the client knows which ones to send again.
+     * @param records jobs to create, consumed once
+     * @return per-record outcome
+     */
+    public JobBatchResult createJobs(Iterator<JobCreateDTO> records) {
+        JobBatchResult result = new JobBatchResult();
+        List<Job> chunk = new ArrayList<>(batchChunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(batchChunkSize);
+        List<CompletableFuture<Void>> chunkHashes = new ArrayList<>(batchChunkSize);
+        Set<UUID> chunkClientUuids = new HashSet<>();
+        int index = 0;
+        String rejected = null;
+        while (hasNextRecord(records, result, index)) {
+            if (rejected != null) {
+                // only read, so the rest of the input is still accounted for
+                try {
+                    records.next();
+                } catch (RuntimeException e) {
+                    // reported as rejected all the same
+                }
+                result.addFailed(index++, rejected);
+                continue;
+            }
+            try {
+                JobCreateDTO record = records.next();
+                Job job = record.toJob();
+                Optional<Job> existing = Optional.empty();
+                if (record.getUuid() != null) {
+                    if (chunkClientUuids.contains(record.getUuid())) {
+                        // repeated within the batch: save the first one so it has an id to replay
+                        saveChunk(chunk, chunkIndexes, chunkHashes, chunkClientUuids, result);
+                    }
+                    existing = findCreatedJob(record.getUuid());
+                }
+                if (existing.isPresent()) {
+                    result.addReplayed(index, existing.get().getId());
+                } else {
+                    validateNewJob(job);
+                    chunkHashes.add(hashWhenQueued(job));
+                    chunk.add(job);
+                    chunkIndexes.add(index);
+                    if (record.getUuid() != null) {
+                        chunkClientUuids.add(record.getUuid());
+                    }
+                }
+            } catch (RejectedExecutionException e) {
+                logger.warn("Batch create stopped at record {}, the hashing queue stayed full", index);
+                rejected = "Not processed: " + e.getMessage();
+                result.addFailed(index, rejected);
+            } catch (RuntimeException e) {
+                result.addFailed(index, e.getMessage());
+            }
+            index++;
+            if (chunk.size() >= batchChunkSize) {
+                saveChunk(chunk, chunkIndexes, chunkHashes, chunkClientUuids, result);
+            }
+        }
+        saveChunk(chunk, chunkIndexes, chunkHashes, chunkClientUuids, result);
+        result.getResults().sort(Comparator.comparingInt(JobBatchResult.RecordResult::getIndex));
+        logger.info("Batch create: {} received, {} created, {} failed", result.getReceived(), result.getCreated(), result.getFailed());
+        return result;
+    }
+
+    private boolean hasNextRecord(Iterator<JobCreateDTO> records, JobBatchResult result, int index) {
+        try {
+            return records.hasNext();
+        } catch (RuntimeException e) {
+            // the input itself is unreadable past this point
+            result.addFailed(index, "Malformed input: " + e.getMessage());
+            return false;
+        }
+    }
 
+    /**
+     * Queues the hash of a batch record. While the hashing queue is full the
+     * request waits for the pool to take hashes off it, whether they are this
+     * batch's or other requests', so a large batch proceeds at the pace of the
+     * hashing pool and never hashes on the request thread.
+     * @throws RejectedExecutionException if the queue stays full for app.jobs.batch.hash-wait
+     */
+    private CompletableFuture<Void> hashWhenQueued(Job job) {
+        long deadline = System.nanoTime() + batchHashWait.toNanos();
+        while (true) {
+            try {
+                return sensitiveDataHasher.hashAsync(job.getSensitiveData()).thenAccept(job::setSensitiveData);
+            } catch (RejectedExecutionException e) {
+                try {
+                    if (!sensitiveDataHasher.awaitCapacity(Duration.ofNanos(deadline - System.nanoTime()))) {
+                        throw e;
+                    }
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void saveChunk(List<Job> chunk, List<Integer> chunkIndexes, List<CompletableFuture<Void>> chunkHashes,
+                           Set<UUID> chunkClientUuids, JobBatchResult result) {
+        // the chunk's hashes were computed in parallel while the next records were being read
+        for (int i = chunk.size() - 1; i >= 0; i--) {
+            try {
+                chunkHashes.get(i).join();
+            } catch (CompletionException e) {
+                logger.warn("Hashing batch record {} failed", chunkIndexes.get(i), e.getCause());
+                result.addFailed(chunkIndexes.get(i), "Hashing failed: " + e.getCause().getMessage());
+                chunk.remove(i);
+                chunkIndexes.remove(i);
+            }
+        }
+        chunkHashes.clear();
+        if (chunk.isEmpty()) {
+            chunkClientUuids.clear();
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jobRepository.saveAll(chunk);
+                // keep the persistence context from growing across chunks
+                entityManager.flush();
+                entityManager.clear();
+            });
+            jobCache.invalidateCreated(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                Job job = chunk.get(i);
+                if (chunkClientUuids.contains(job.getUuid())) {
+                    idempotencyKeys.remember(job.getUuid(), job.getId());
+                }
+                result.addCreated(chunkIndexes.get(i), job.getId());
+                jobStatsCounter.created(job.getStatus(), job.getJobType());
+                eventPublisher.publishEvent(JobEvent.of(JobEvent.Type.CREATED, job, null));
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Batch chunk of {} jobs rejected, retrying one by one", chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                Job job = chunk.get(i);
+                job.setId(null);
+                job.setVersion(null);
+                try {
+                    result.addCreated(chunkIndexes.get(i), jobRepository.save(job).getId());
+                    if (chunkClientUuids.contains(job.getUuid())) {
+                        idempotencyKeys.remember(job.getUuid(), job.getId());
+                    }
+                    jobCache.invalidateCreated(job);
+                    jobStatsCounter.created(job.getStatus(), job.getJobType());
+                    eventPublisher.publishEvent(JobEvent.of(JobEvent.Type.CREATED, job, null));
+                } catch (DataAccessException single) {
+                    Optional<Job> existing = single instanceof DataIntegrityViolationException && chunkClientUuids.contains(job.getUuid())
+                            ? findCreatedJob(job.getUuid()) : Optional.empty();
+                    if (existing.isPresent()) {
+                        result.addReplayed(chunkIndexes.get(i), existing.get().getId());
+                    } else {
+                        result.addFailed(chunkIndexes.get(i), single.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+        chunkClientUuids.clear();
+    }
+
+    private void validateNewJob(Job job) {
         if (job.getJobName() == null || job.getStatus() == null || job.getCreatedAt() == null || job.getUpdatedAt() == null || job.getJobType() == null ||job.getSensitiveData() == null) {
             throw new IllegalArgumentException("Job details cannot be null");
         }
@@ -59,18 +439,30 @@ public class JobService {
         if (job.getCreatedAt().isAfter(LocalDateTime.now())) {
             throw new RuntimeException("Dates cannot be in the future");
         }
-
-        logger.debug("sensitive data: {}", job.getSensitiveData());
-        String encryptedData = sensitiveDataEncoder.encode(job.getSensitiveData());
-        job.setSensitiveData(encryptedData);
-        return jobRepository.save(job);
+        job.setStatus(jobDictionary.statuses().register(job.getStatus()));
+        job.setJobType(jobDictionary.jobTypes().register(job.getJobType()));
     }
 
 
 
+    /**
+     * Finds a job through the cache. Misses are loaded from the primary, never from a
+     * read replica, so a lagging replica cannot put an outdated job into the cache.
+     * A job with updates still in the write-behind buffer is returned as buffered.
+     */
     public Optional<Job> findJobById(Long id){
         logger.debug("Finding job with ID: {}", id);
-        return jobRepository.findById(id);
+        Optional<Job> buffered = writeBehind.find(id);
+        if (buffered.isPresent()) {
+            return buffered;
+        }
+        return jobCache.getJob(id, () -> onPrimary(() -> jobRepository.findById(id)));
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Job> findJobByUuid(UUID uuid) {
+        logger.debug("Finding job with UUID: {}", uuid);
+        return jobRepository.findByUuid(uuid).map(job -> writeBehind.find(job.getId()).orElse(job));
     }
 
     /**
@@ -81,58 +473,439 @@ public class JobService {
      * @throws RuntimeException id id is not in database
      */
     public Job updateJob(Long id, Job jobDetails) {
+        return updateJob(id, jobDetails, null);
+    }
+
+    /**
+     * Update a possibly existing Job, if it is still at the version the client read
+     * @param id Id of the job to update
+     * @param jobDetails all details from JSON in the request
+     * @param expectedVersion version from the If-Match header, null to update unconditionally
+     * @return updated job Entity
+     * @throws RuntimeException id id is not in database
+     * @throws OptimisticLockingFailureException if the job was changed since expectedVersion
+     */
+    public Job updateJob(Long id, Job jobDetails, Long expectedVersion) {
         logger.debug("updating job with id: {}",id);
-        Job job = jobRepository.findById(id).orElseThrow(() -> new RuntimeException("Job not found"));
-        logger.debug("Found job: {}", job.toString());
-        StringBuilder errorMessages = new StringBuilder();
+        String status = jobDetails.getStatus() == null ? null : jobDictionary.statuses().register(jobDetails.getStatus());
+        return applyChanges(id, expectedVersion, job -> {
+            StringBuilder errorMessages = new StringBuilder();
+
+            if (jobDetails.getJobName() == null || jobDetails.getJobName().trim().isEmpty()) {
+                errorMessages.append("Job name cannot be empty");
+            }
+            if (jobDetails.getStatus() == null) {
+                if (errorMessages.length() > 0) {
+                    errorMessages.append(" and ");
+                }
+                errorMessages.append("Status cannot be null");
+            }
+            if (jobDetails.getJobName().length() > MAX_NAME_LENGTH) {
+                throw new RuntimeException("Job name exceeds maximum length");
+            }
 
-        if (jobDetails.getJobName() == null || jobDetails.getJobName().trim().isEmpty()) {
-            errorMessages.append("Job name cannot be empty");
-        }
-        if (jobDetails.getStatus() == null) {
             if (errorMessages.length() > 0) {
-                errorMessages.append(" and ");
+                throw new RuntimeException(errorMessages.toString());
+            }
+
+            job.setJobName(jobDetails.getJobName());
+            job.setStatus(status);
+            // created_at cannot be null, a request without it keeps the creation time
+            if (jobDetails.getCreatedAt() != null) {
+                job.setCreatedAt(jobDetails.getCreatedAt());
+            }
+            job.setUpdatedAt(jobDetails.getUpdatedAt());
+        });
+    }
+
+    /**
+     * Changes only the fields present in the patch
+     * @param id Id of the job to update
+     * @param patch fields to change, null fields are kept
+     * @param expectedVersion version from the If-Match header, null to update unconditionally
+     * @return updated job Entity
+     * @throws RuntimeException id id is not in database or the new name is invalid
+     * @throws OptimisticLockingFailureException if the job was changed since expectedVersion
+     */
+    public Job patchJob(Long id, JobPatchDTO patch, Long expectedVersion) {
+        logger.debug("patching job with id: {}", id);
+        if (patch.getJobName() != null) {
+            if (patch.getJobName().trim().isEmpty()) {
+                throw new RuntimeException("Job name cannot be empty");
+            }
+            if (patch.getJobName().length() > MAX_NAME_LENGTH) {
+                throw new RuntimeException("Job name exceeds maximum length");
             }
-            errorMessages.append("Status cannot be null");
         }
-        logger.debug(jobDetails.getJobName());
-        if (jobDetails.getJobName().length() > MAX_NAME_LENGTH) {
-            throw new RuntimeException("Job name exceeds maximum length");
+        String status = patch.getStatus() == null ? null : jobDictionary.statuses().register(patch.getStatus());
+        return applyChanges(id, expectedVersion, job -> {
+            Optional.ofNullable(patch.getJobName()).ifPresent(job::setJobName);
+            Optional.ofNullable(status).ifPresent(job::setStatus);
+            Optional.ofNullable(patch.getCreatedAt()).ifPresent(job::setCreatedAt);
+            Optional.ofNullable(patch.getUpdatedAt()).ifPresent(job::setUpdatedAt);
+        });
+    }
+
+    private record Update(Job job, String previousStatus, boolean changed) {
+    }
+
+    /**
+     * Loads the job, applies the changes and writes it in one transaction.
+     * Nothing is written when the changes leave the job as it was; otherwise
+     * the UPDATE carries only the changed columns and is checked against the
+     * version, so a concurrent writer makes it fail instead of being overwritten.
+     * Caches and counters are updated after the commit.
+     * Unconditional updates go to the write-behind buffer when it is enabled;
+     * conditional ones flush it first so the version check sees buffered changes.
+     */
+    private Job applyChanges(Long id, Long expectedVersion, Consumer<Job> changes) {
+        if (expectedVersion == null && writeBehind.isActive()) {
+            return writeBehind.update(id, changes);
         }
+        writeBehind.flush();
+        Update update = transactionTemplate.execute(status -> {
+            Job job = jobRepository.findById(id).orElseThrow(() -> new RuntimeException("Job not found"));
+            if (expectedVersion != null && !expectedVersion.equals(job.getVersion())) {
+                throw new OptimisticLockingFailureException("Job " + id + " is at version " + job.getVersion()
+                        + ", not " + expectedVersion);
+            }
+            List<Object> before = updatableState(job);
+            String previousStatus = job.getStatus();
+            changes.accept(job);
+            if (before.equals(updatableState(job))) {
+                return new Update(job, previousStatus, false);
+            }
+            if (!previousStatus.equals(job.getStatus())) {
+                // a worker reported the claimed job as done, or it was moved by hand
+                job.setLeaseExpiresAt(null);
+            }
+            return new Update(jobRepository.saveAndFlush(job), previousStatus, true);
+        });
+        Job savedJob = update.job();
+        if (!update.changed()) {
+            logger.debug("Job {} unchanged, skipping update", id);
+            return savedJob;
+        }
+        jobCache.invalidate(savedJob);
+        jobCache.evict(List.of(JobCache.statusKey(update.previousStatus())));
+        jobStatsCounter.changed(update.previousStatus(), savedJob.getJobType(), savedJob.getStatus(), savedJob.getJobType());
+        String previousStatus = update.previousStatus().equals(savedJob.getStatus()) ? null : update.previousStatus();
+        eventPublisher.publishEvent(JobEvent.of(JobEvent.Type.UPDATED, savedJob, previousStatus));
+        return savedJob;
+    }
+
+    static List<Object> updatableState(Job job) {
+        return Arrays.asList(job.getJobName(), job.getStatus(), job.getCreatedAt(), job.getUpdatedAt());
+    }
 
-        if (errorMessages.length() > 0) {
-            throw new RuntimeException(errorMessages.toString());
+    /**
+     * Claims up to limit of the oldest PENDING jobs for a worker: they are moved
+     * to RUNNING and leased for the given duration, all in one transaction.
+     * Rows locked by concurrent claims are skipped rather than waited for, so
+     * many workers can claim at once and never receive the same job.
+     * A worker finishes a job by updating its status, which ends the lease;
+     * jobs still RUNNING when their lease expires are put back to PENDING.
+     * @param jobType only jobs of this type, null for any type
+     * @param limit number of jobs wanted, null for one; capped at app.jobs.claim.max-limit
+     * @param lease how long the worker may hold the jobs, null for app.jobs.claim.lease
+     * @return the claimed jobs, oldest first; empty if none are pending
+     * @throws IllegalArgumentException if limit or lease is not positive
+     */
+    public List<Job> claimJobs(String jobType, Integer limit, Duration lease) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("Claim limit must be positive");
+        }
+        Duration leaseDuration = lease == null ? defaultLease : lease;
+        if (leaseDuration.isNegative() || leaseDuration.isZero()) {
+            throw new IllegalArgumentException("Lease must be positive");
         }
+        if (jobType != null && !jobDictionary.jobTypes().contains(jobType)) {
+            // no job of this type was ever created
+            return List.of();
+        }
+        Limit claimLimit = Limit.of(Math.min(limit == null ? 1 : limit, maxClaimLimit));
+        // buffered status changes must be in the table before it is searched for PENDING jobs
+        writeBehind.flush();
+        List<Job> claimed = transactionTemplate.execute(status -> {
+            List<Job> jobs = jobType == null
+                    ? jobRepository.lockOldestByStatus(PENDING, claimLimit)
+                    : jobRepository.lockOldestByStatusAndJobType(PENDING, jobType, claimLimit);
+            LocalDateTime now = LocalDateTime.now(clock);
+            for (Job job : jobs) {
+                job.setStatus(RUNNING);
+                job.setUpdatedAt(now);
+                job.setLeaseExpiresAt(now.plus(leaseDuration));
+            }
+            entityManager.flush();
+            return jobs;
+        });
+        statusChanged(claimed, PENDING);
+        logger.debug("Claimed {} {} jobs", claimed.size(), jobType == null ? "pending" : jobType);
+        return claimed;
+    }
 
-        job.setJobName(jobDetails.getJobName());
-        job.setStatus(jobDetails.getStatus());
-        job.setCreatedAt(jobDetails.getCreatedAt());
-        job.setUpdatedAt(jobDetails.getUpdatedAt());
+    /**
+     * Puts RUNNING jobs whose lease has expired back to PENDING, so another
+     * worker can claim them. Runs every app.jobs.claim.requeue-interval;
+     * instances requeue in parallel without blocking each other.
+     * @return number of jobs put back
+     */
+    @Scheduled(initialDelayString = "${app.jobs.claim.requeue-interval:PT30S}", fixedDelayString = "${app.jobs.claim.requeue-interval:PT30S}")
+    public int requeueExpiredLeases() {
+        writeBehind.flush();
+        int requeued = 0;
+        while (true) {
+            List<Job> expired = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now(clock);
+                List<Job> jobs = jobRepository.lockExpiredLeases(RUNNING, now, Limit.of(batchChunkSize));
+                for (Job job : jobs) {
+                    job.setStatus(PENDING);
+                    job.setUpdatedAt(now);
+                    job.setLeaseExpiresAt(null);
+                }
+                entityManager.flush();
+                return jobs;
+            });
+            statusChanged(expired, RUNNING);
+            requeued += expired.size();
+            if (expired.size() < batchChunkSize) {
+                break;
+            }
+        }
+        if (requeued > 0) {
+            logger.info("Requeued {} jobs whose lease expired", requeued);
+        }
+        return requeued;
+    }
 
-        return jobRepository.save(job);
+    /**
+     * Caches, counters and events for jobs that all moved from one status to their current one
+     */
+    private void statusChanged(List<Job> jobs, String previousStatus) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        jobCache.invalidate(jobs);
+        jobCache.evict(List.of(JobCache.statusKey(previousStatus)));
+        for (Job job : jobs) {
+            jobStatsCounter.changed(previousStatus, job.getJobType(), job.getStatus(), job.getJobType());
+            eventPublisher.publishEvent(JobEvent.of(JobEvent.Type.UPDATED, job, previousStatus));
+        }
     }
 
     public void deleteJob(Long id){
         logger.debug("Deleting job with ID: {}", id);
-        Job job = jobRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Job not found"));
-        jobRepository.delete(job);
+        writeBehind.discard(id);
+        Job job = transactionTemplate.execute(status -> {
+            Job found = jobRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Job not found"));
+            jobRepository.delete(found);
+            return found;
+        });
+        jobsDeleted(List.of(job));
         logger.info("Job deleted with ID: {}", id);
     }
 
-    public List<Job> getJobsByStatus(String status) {
-        logger.debug("Fetching jobs with status: {}", status);
-        return jobRepository.findByStatus(status);
+    /**
+     * Buffered updates, caches, counters and events for jobs that were deleted
+     * from the table, by deleteJob or by JobRetentionService
+     */
+    public void jobsDeleted(List<Job> jobs) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        jobs.forEach(job -> writeBehind.discard(job.getId()));
+        jobCache.invalidate(jobs);
+        for (Job job : jobs) {
+            jobStatsCounter.deleted(job.getStatus(), job.getJobType());
+            eventPublisher.publishEvent(JobEvent.of(JobEvent.Type.DELETED, job, null));
+        }
     }
 
-    public List<Job> getJobsByJobType(String jobType) {
-        logger.debug("Fetching jobs with job type: {}", jobType);
-        return jobRepository.findByJobType(jobType);
+    /**
+     * Lists the jobs with the status. A status the dictionary does not know
+     * cannot match any job, so it is answered without a query.
+     */
+    public List<JobSummary> getJobsByStatus(String status) {
+        if (!jobDictionary.statuses().contains(status)) {
+            return List.of();
+        }
+        List<JobSummary> jobs = jobCache.getList(JobCache.statusKey(status), JobSummary.class, () -> onPrimary(() -> jobRepository.findByStatus(status)));
+        logResult("status", status, jobs);
+        return writeBehind.overlay(jobs);
     }
 
-    public List<Job> getJobsByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        logger.debug("Fetching jobs between {} and {}", startDate, endDate);
-        return jobRepository.findByDateRange(startDate, endDate);
+    public List<JobSummary> getJobsByJobType(String jobType) {
+        if (!jobDictionary.jobTypes().contains(jobType)) {
+            return List.of();
+        }
+        List<JobSummary> jobs = jobCache.getList(JobCache.jobTypeKey(jobType), JobSummary.class, () -> onPrimary(() -> jobRepository.findByJobType(jobType)));
+        logResult("jobType", jobType, jobs);
+        return writeBehind.overlay(jobs);
     }
 
+    @Transactional(readOnly = true)
+    public List<JobSummary> getJobsByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        List<JobSummary> jobs = jobRepository.findByDateRange(startDate, endDate);
+        logResult("dateRange", startDate, jobs);
+        return writeBehind.overlay(jobs);
+    }
+
+    /**
+     * Passes every job created between the two dates to the consumer, one row at a time
+     */
+    @Transactional(readOnly = true)
+    public void streamJobsByDateRange(LocalDateTime startDate, LocalDateTime endDate, Consumer<JobSummary> consumer) {
+        logger.debug("Streaming jobs between {} and {}", startDate, endDate);
+        try (Stream<JobSummary> jobs = jobRepository.streamByDateRange(startDate, endDate)) {
+            jobs.forEach(writeBehind.overlay(consumer));
+        }
+    }
+
+    /**
+     * Finds the jobs matching all given criteria, one keyset page at a time
+     * @param criteria filters and order
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param limit requested page size, null for the default; capped at the configured maximum
+     * @param count also count the matches, up to app.jobs.search.count-cap
+     * @return the page, the cursor of the next page and the optional count
+     * @throws IllegalArgumentException if the cursor, page size or date range is invalid
+     */
+    @Transactional(readOnly = true)
+    public JobSearchResult searchJobs(JobSearchCriteria criteria, String cursor, Integer limit, boolean count) {
+        int pageSize = resolvePageSize(limit);
+        if (criteria.getCreatedFrom() != null && criteria.getCreatedTo() != null
+                && !criteria.getCreatedFrom().isBefore(criteria.getCreatedTo())) {
+            throw new IllegalArgumentException("createdFrom must be before createdTo");
+        }
+        JobSearchCursor after = cursor == null ? null : JobSearchCursor.decode(cursor);
+        JobSearchResult result = new JobSearchResult();
+        if (!isKnown(criteria)) {
+            result.setJobs(List.of());
+            if (count) {
+                result.setCount(0L);
+            }
+            return result;
+        }
+        List<JobSummary> jobs = jobRepository.search(criteria, after, pageSize);
+        logResult("search", criteria, jobs);
+
+        result.setJobs(writeBehind.overlay(jobs));
+        if (jobs.size() == pageSize) {
+            result.setNextCursor(JobSearchCursor.after(jobs.get(jobs.size() - 1), criteria.getSort()).encode());
+        }
+        if (count) {
+            long matches = jobRepository.countUpTo(criteria, searchCountCap);
+            result.setCount(Math.min(matches, searchCountCap));
+            result.setCountIsLowerBound(matches > searchCountCap);
+        }
+        return result;
+    }
+
+    /**
+     * @return false if the criteria filter on a status or job type the dictionary does not know
+     */
+    private boolean isKnown(JobSearchCriteria criteria) {
+        return (criteria.getStatus() == null || jobDictionary.statuses().contains(criteria.getStatus()))
+                && (criteria.getJobType() == null || jobDictionary.jobTypes().contains(criteria.getJobType()));
+    }
+
+    /**
+     * Runs a cache loader in a read-write transaction, which keeps it on the primary
+     */
+    private <T> T onPrimary(Supplier<T> loader) {
+        return transactionTemplate.execute(status -> loader.get());
+    }
+
+    /**
+     * Logs a list result as its size and id range only, for a sample of calls per endpoint
+     */
+    private void logResult(String endpoint, Object filter, List<JobSummary> jobs) {
+        if (!logger.isDebugEnabled() || !logSampler.sample(endpoint)) {
+            return;
+        }
+        if (jobs.isEmpty()) {
+            logger.debug("Found no jobs for {} {}", endpoint, filter);
+        } else {
+            logger.debug("Found {} jobs for {} {}, ids {}..{}", jobs.size(), endpoint, filter,
+                    jobs.get(0).id(), jobs.get(jobs.size() - 1).id());
+        }
+    }
+
+    /**
+     * Summarizes the jobs table: counts per status and job type, and the failure
+     * rate of every job type. The counts come from the in-memory summary unless
+     * exact is set, in which case the database computes them with GROUP BY.
+     * When from and to are given, a histogram of job creation over that range
+     * is added, always computed by the database.
+     * @param from start of the histogram range, inclusive
+     * @param to end of the histogram range, exclusive
+     * @param bucket "day" or "hour"
+     * @param exact compute the counts in the database instead of from the summary
+     * @return job statistics
+     * @throws IllegalArgumentException if the histogram range is invalid or has too many buckets
+     */
+    public JobStats getStats(LocalDateTime from, LocalDateTime to, String bucket, boolean exact) {
+        List<JobHistogramBucket> histogram = null;
+        if (from != null || to != null) {
+            histogram = getHistogram(from, to, bucket);
+        }
+        // only the database queries run in a (read-only) transaction, the summary never borrows a connection
+        List<JobCount> counts = exact
+                ? readOnlyTransaction.execute(status -> jobRepository.countByStatusAndJobType())
+                : jobStatsCounter.snapshot();
+
+        JobStats stats = new JobStats();
+        stats.setSource(exact ? "database" : "summary");
+        stats.setByStatusAndJobType(counts);
+        Map<String, Long> byStatus = new TreeMap<>();
+        Map<String, Long> byJobType = new TreeMap<>();
+        Map<String, Long> failedByJobType = new TreeMap<>();
+        long total = 0;
+        for (JobCount count : counts) {
+            total += count.count();
+            byStatus.merge(count.status(), count.count(), Long::sum);
+            byJobType.merge(count.jobType(), count.count(), Long::sum);
+            if ("FAILED".equals(count.status())) {
+                failedByJobType.merge(count.jobType(), count.count(), Long::sum);
+            }
+        }
+        Map<String, Double> failureRate = new TreeMap<>();
+        byJobType.forEach((jobType, count) -> failureRate.put(jobType, (double) failedByJobType.getOrDefault(jobType, 0L) / count));
+        stats.setTotal(total);
+        stats.setByStatus(byStatus);
+        stats.setByJobType(byJobType);
+        stats.setFailureRateByJobType(failureRate);
+        stats.setHistogram(histogram);
+        return stats;
+    }
+
+    private List<JobHistogramBucket> getHistogram(LocalDateTime from, LocalDateTime to, String bucket) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("Histogram needs both from and to, with from before to");
+        }
+        boolean hourly = "hour".equals(bucket);
+        if (!hourly && bucket != null && !"day".equals(bucket)) {
+            throw new IllegalArgumentException("Bucket must be day or hour");
+        }
+        Duration range = Duration.between(from, to);
+        long buckets = hourly ? range.toHours() : range.toDays();
+        if (buckets > maxHistogramBuckets) {
+            throw new IllegalArgumentException("Histogram range spans more than " + maxHistogramBuckets + " buckets");
+        }
+        logger.debug("Computing {} histogram between {} and {}", hourly ? "hourly" : "daily", from, to);
+        return readOnlyTransaction.execute(status -> hourly ? jobRepository.hourlyHistogram(from, to) : jobRepository.dailyHistogram(from, to));
+    }
+
+    /**
+     * Reloads the in-memory summary from the database, at startup and then
+     * every app.stats.resync-interval, to correct drift from writes made
+     * outside this service or by other instances.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.stats.resync-interval:PT5M}", fixedDelayString = "${app.stats.resync-interval:PT5M}")
+    public void resyncStats() {
+        jobStatsCounter.reload(jobRepository.countByStatusAndJobType());
+        logger.debug("Job statistics summary reloaded");
+    }
 }
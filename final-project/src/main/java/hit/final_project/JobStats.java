@@ -0,0 +1,24 @@
+package hit.final_project;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response of GET /api/jobs/stats.
+ * source tells whether the counts come from the in-memory summary or were
+ * computed by the database; histogram is only present when a range was requested.
+ */
+@Data
+@NoArgsConstructor
+public class JobStats {
+    private String source;
+    private long total;
+    private Map<String, Long> byStatus;
+    private Map<String, Long> byJobType;
+    private List<JobCount> byStatusAndJobType;
+    private Map<String, Double> failureRateByJobType;
+    private List<JobHistogramBucket> histogram;
+}
@@ -0,0 +1,68 @@
+package hit.final_project;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory count of jobs per status and job type, kept current by JobService
+ * so the dashboard summary never has to scan the jobs table.
+ * Writes that bypass JobService (or happen on another instance) are picked up
+ * when the counters are reloaded from the database.
+ */
+@Component
+public class JobStatsCounter {
+    private record Key(String status, String jobType) {
+    }
+
+    private volatile Map<Key, LongAdder> counts = new ConcurrentHashMap<>();
+
+    public void created(String status, String jobType) {
+        add(status, jobType, 1);
+    }
+
+    public void deleted(String status, String jobType) {
+        add(status, jobType, -1);
+    }
+
+    public void changed(String previousStatus, String previousJobType, String status, String jobType) {
+        if (previousStatus.equals(status) && previousJobType.equals(jobType)) {
+            return;
+        }
+        add(previousStatus, previousJobType, -1);
+        add(status, jobType, 1);
+    }
+
+    private void add(String status, String jobType, long delta) {
+        counts.computeIfAbsent(new Key(status, jobType), key -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Replaces all counters with counts computed by the database.
+     * Changes recorded while the query ran may be lost until the next reload.
+     */
+    public void reload(List<JobCount> jobCounts) {
+        Map<Key, LongAdder> reloaded = new ConcurrentHashMap<>();
+        for (JobCount jobCount : jobCounts) {
+            LongAdder adder = new LongAdder();
+            adder.add(jobCount.count());
+            reloaded.put(new Key(jobCount.status(), jobCount.jobType()), adder);
+        }
+        counts = reloaded;
+    }
+
+    public List<JobCount> snapshot() {
+        List<JobCount> snapshot = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> {
+            long value = count.sum();
+            if (value > 0) {
+                snapshot.add(new JobCount(key.status(), key.jobType(), value));
+            }
+        });
+        return snapshot;
+    }
+}
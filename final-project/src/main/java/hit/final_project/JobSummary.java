@@ -0,0 +1,17 @@
+package hit.final_project;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Public columns of a job, used by the list endpoints.
+ * Selected directly by JobRepository queries, so the sensitive data column
+ * is never read and no managed entity is created.
+ * Serialized by the hand-written JobSummarySerializer, as list responses carry many of them.
+ */
+@JsonSerialize(using = JobSummarySerializer.class)
+public record JobSummary(Long id, UUID uuid, String jobName, String status,
+                         LocalDateTime createdAt, LocalDateTime updatedAt, String jobType) {
+}
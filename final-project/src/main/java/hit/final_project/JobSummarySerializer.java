@@ -0,0 +1,101 @@
+package hit.final_project;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes JobSummary rows without reflection or per-field serializer lookups.
+ * Field names are pre-encoded, and the output is identical to Jackson's
+ * default form (ISO date-times, null fields included), so clients and
+ * JobCache read it back unchanged.
+ */
+public class JobSummarySerializer extends StdSerializer<JobSummary> {
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString UUID = new SerializedString("uuid");
+    private static final SerializableString JOB_NAME = new SerializedString("jobName");
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializableString UPDATED_AT = new SerializedString("updatedAt");
+    private static final SerializableString JOB_TYPE = new SerializedString("jobType");
+
+    public JobSummarySerializer() {
+        super(JobSummary.class);
+    }
+
+    @Override
+    public void serialize(JobSummary job, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(job, 7);
+        gen.writeFieldName(ID);
+        if (job.id() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(job.id());
+        }
+        gen.writeFieldName(UUID);
+        gen.writeString(job.uuid() == null ? null : job.uuid().toString());
+        gen.writeFieldName(JOB_NAME);
+        gen.writeString(job.jobName());
+        gen.writeFieldName(STATUS);
+        gen.writeString(job.status());
+        gen.writeFieldName(CREATED_AT);
+        writeDateTime(gen, job.createdAt());
+        gen.writeFieldName(UPDATED_AT);
+        writeDateTime(gen, job.updatedAt());
+        gen.writeFieldName(JOB_TYPE);
+        gen.writeString(job.jobType());
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes the same text as DateTimeFormatter.ISO_LOCAL_DATE_TIME (seconds always
+     * present, fraction without trailing zeros) straight into a char buffer.
+     * Years outside 0-9999 need a sign and go through the formatter.
+     */
+    private static void writeDateTime(JsonGenerator gen, LocalDateTime value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+            return;
+        }
+        if (value.getYear() < 0 || value.getYear() > 9999) {
+            gen.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value));
+            return;
+        }
+        char[] buf = new char[29];
+        digits(buf, 0, value.getYear(), 4);
+        buf[4] = '-';
+        digits(buf, 5, value.getMonthValue(), 2);
+        buf[7] = '-';
+        digits(buf, 8, value.getDayOfMonth(), 2);
+        buf[10] = 'T';
+        digits(buf, 11, value.getHour(), 2);
+        buf[13] = ':';
+        digits(buf, 14, value.getMinute(), 2);
+        buf[16] = ':';
+        digits(buf, 17, value.getSecond(), 2);
+        int length = 19;
+        int nano = value.getNano();
+        if (nano != 0) {
+            buf[19] = '.';
+            digits(buf, 20, nano, 9);
+            length = 29;
+            while (buf[length - 1] == '0') {
+                length--;
+            }
+        }
+        gen.writeString(buf, 0, length);
+    }
+
+    private static void digits(char[] buf, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
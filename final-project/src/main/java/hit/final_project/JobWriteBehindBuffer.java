@@ -0,0 +1,380 @@
+package hit.final_project;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Opt-in write-behind mode for unconditional job updates (app.jobs.write-behind.enabled).
+ * <p>
+ * An update is applied to an in-memory copy of the job and answered at once.
+ * Repeated updates of the same job are coalesced into that copy. Every
+ * app.jobs.write-behind.flush-interval, or as soon as app.jobs.write-behind.max-pending
+ * jobs are waiting, the copies are written in one JDBC batch of version checked
+ * UPDATEs. A job reporting its status ten times between flushes costs one write.
+ * <p>
+ * Single job reads return the buffered copy, and list results show buffered
+ * field values for the rows they contain; which list a job appears in catches up
+ * at the next flush. Cache eviction, statistics and UPDATED events follow the
+ * flush, so subscribers see the coalesced change once. The buffer is drained
+ * when the application shuts down.
+ * <p>
+ * The scheduled flush runs on a thread of its own, started only when the mode is
+ * enabled, so a long retention run on the shared scheduler cannot hold it back.
+ * <p>
+ * Returned jobs carry the version they will have once flushed, so their ETag
+ * stays valid; conditional updates flush the buffer first and then run as usual.
+ */
+@Component
+public class JobWriteBehindBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(JobWriteBehindBuffer.class);
+    // a status change ends the lease of a claimed job, as it does for updates written directly
+    private static final String UPDATE = "UPDATE jobs SET job_name = :jobName, status_id = :statusId, created_at = :createdAt,"
+            + " updated_at = :updatedAt, lease_expires_at = CASE WHEN status_id = :statusId THEN lease_expires_at END,"
+            + " version = version + 1 WHERE id = :id AND created_at = :baseCreatedAt AND version = :version";
+
+    /**
+     * Buffered state of one job
+     * @param job latest state, never handed out
+     * @param baseVersion version of the row the state will be written over
+     * @param baseCreatedAt created_at of that row, the partition key of the partitioned schema
+     * @param previousStatus status of that row, for statistics and events
+     */
+    private record Pending(Job job, long baseVersion, LocalDateTime baseCreatedAt, String previousStatus) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobRepository jobRepository;
+    private final JobCache jobCache;
+    private final JobStatsCounter jobStatsCounter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JobDictionary jobDictionary;
+    private final boolean enabled;
+    private final int maxPending;
+    private final Duration flushInterval;
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    // taken out of pending by the running flush, still visible to reads until committed
+    private final Map<Long, Pending> flushing = new ConcurrentHashMap<>();
+    // updates share the read lock; a flush takes the write lock to move pending into flushing and to clear it
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Counter buffered;
+    private final Counter written;
+    private final Counter conflicts;
+    private ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    @Autowired
+    public JobWriteBehindBuffer(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                JobRepository jobRepository, JobCache jobCache, JobStatsCounter jobStatsCounter,
+                                ApplicationEventPublisher eventPublisher, JobDictionary jobDictionary, MeterRegistry meterRegistry,
+                                @Value("${app.jobs.write-behind.enabled:false}") boolean enabled,
+                                @Value("${app.jobs.write-behind.max-pending:1000}") int maxPending,
+                                @Value("${app.jobs.write-behind.flush-interval:PT0.2S}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobRepository = jobRepository;
+        this.jobCache = jobCache;
+        this.jobStatsCounter = jobStatsCounter;
+        this.eventPublisher = eventPublisher;
+        this.jobDictionary = jobDictionary;
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+        this.flushInterval = flushInterval;
+        Gauge.builder("jobs.write-behind.pending", pending, Map::size).register(meterRegistry);
+        this.buffered = Counter.builder("jobs.write-behind.updates").description("Updates taken into the buffer").register(meterRegistry);
+        this.written = Counter.builder("jobs.write-behind.writes").description("Rows written by flushes").register(meterRegistry);
+        this.conflicts = Counter.builder("jobs.write-behind.conflicts")
+                .description("Buffered updates dropped because the row was changed or deleted meanwhile, or the database rejected them")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if unconditional updates should go through the buffer
+     */
+    public boolean isActive() {
+        return enabled && !closed;
+    }
+
+    /**
+     * Applies the changes to the buffered copy of the job, loading it from the primary if none is buffered
+     * @return the changed job, carrying the version it will have once flushed
+     * @throws RuntimeException if the job does not exist or the changes reject it
+     */
+    public Job update(Long id, Consumer<Job> changes) {
+        Job result;
+        swapLock.readLock().lock();
+        try {
+            Pending base = null;
+            if (!pending.containsKey(id)) {
+                base = flushing.get(id);
+                if (base != null) {
+                    base = new Pending(base.job(), base.baseVersion() + 1, base.job().getCreatedAt(), base.job().getStatus());
+                } else {
+                    Job stored = transactionTemplate.execute(status -> jobRepository.findById(id))
+                            .orElseThrow(() -> new RuntimeException("Job not found"));
+                    base = new Pending(stored, stored.getVersion(), stored.getCreatedAt(), stored.getStatus());
+                }
+            }
+            Pending loaded = base;
+            Job[] changed = new Job[1];
+            Pending current = pending.compute(id, (key, existing) -> {
+                Pending from = existing != null ? existing : loaded;
+                Job job = copy(from.job());
+                List<Object> before = JobService.updatableState(job);
+                changes.accept(job);
+                if (before.equals(JobService.updatableState(job))) {
+                    changed[0] = null;
+                    return existing;
+                }
+                if (!from.previousStatus().equals(job.getStatus())) {
+                    job.setLeaseExpiresAt(null);
+                }
+                changed[0] = job;
+                return new Pending(job, from.baseVersion(), from.baseCreatedAt(), from.previousStatus());
+            });
+            if (changed[0] == null) {
+                // nothing new to write; answer with what the job is or will be
+                Pending unchanged = current != null ? current : loaded;
+                result = withVersion(unchanged.job(), current != null ? unchanged.baseVersion() + 1 : unchanged.baseVersion());
+            } else {
+                buffered.increment();
+                result = withVersion(changed[0], current.baseVersion() + 1);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (pending.size() >= maxPending) {
+            flush();
+        }
+        return result;
+    }
+
+    /**
+     * @return the buffered state of the job, if it has unflushed changes
+     */
+    public Optional<Job> find(Long id) {
+        Pending found = pending.get(id);
+        if (found == null) {
+            found = flushing.get(id);
+            if (found == null) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(withVersion(found.job(), found.baseVersion() + 1));
+    }
+
+    /**
+     * Replaces rows that have buffered changes with their buffered values
+     */
+    public List<JobSummary> overlay(List<JobSummary> jobs) {
+        if (pending.isEmpty() && flushing.isEmpty()) {
+            return jobs;
+        }
+        List<JobSummary> result = new ArrayList<>(jobs.size());
+        jobs.forEach(overlay(result::add));
+        return result;
+    }
+
+    /**
+     * Wraps a row consumer so rows with buffered changes arrive with their buffered values
+     */
+    public Consumer<JobSummary> overlay(Consumer<JobSummary> consumer) {
+        if (!enabled) {
+            return consumer;
+        }
+        return summary -> consumer.accept(find(summary.id())
+                .map(job -> new JobSummary(job.getId(), job.getUuid(), job.getJobName(), job.getStatus(),
+                        job.getCreatedAt(), job.getUpdatedAt(), job.getJobType()))
+                .orElse(summary));
+    }
+
+    /**
+     * Drops the buffered changes of a job that is being deleted
+     */
+    public void discard(Long id) {
+        pending.remove(id);
+    }
+
+    /**
+     * Starts flushing every app.jobs.write-behind.flush-interval, if the mode is enabled
+     */
+    @PostConstruct
+    void startFlushing() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("write-behind-flush").factory());
+        flusher.scheduleWithFixedDelay(this::scheduledFlush, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    boolean isFlushing() {
+        return flusher != null && !flusher.isShutdown();
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // an exception would cancel the schedule; the jobs stay buffered for the next run
+            logger.error("Scheduled write-behind flush failed", e);
+        }
+    }
+
+    /**
+     * Writes every buffered job in one batch of version checked UPDATEs.
+     * If the batch fails the jobs are put back, so the next flush retries them.
+     * Returns once every change buffered before the call is in the table, waiting
+     * for a flush already running on another thread to commit.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            swapLock.writeLock().lock();
+            try {
+                flushing.putAll(pending);
+                pending.clear();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            if (flushing.isEmpty()) {
+                return;
+            }
+            List<Pending> batch = new ArrayList<>(flushing.values());
+            try {
+                int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(UPDATE,
+                        batch.stream().map(this::parameters).toArray(SqlParameterSource[]::new)));
+                afterFlush(batch, counts);
+            } catch (DataAccessException e) {
+                logger.error("Write-behind flush of {} jobs failed, keeping them buffered", batch.size(), e);
+                requeue(batch);
+            }
+        } finally {
+            swapLock.writeLock().lock();
+            try {
+                flushing.clear();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops buffering and writes what is left; the web server has stopped taking requests by now
+     */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        if (flusher != null) {
+            // a flush still running holds the flush lock, the drain below waits for it
+            flusher.shutdown();
+        }
+        if (!pending.isEmpty()) {
+            logger.info("Draining {} buffered job updates", pending.size());
+            flush();
+        }
+    }
+
+    private void afterFlush(List<Pending> batch, int[] counts) {
+        List<Job> flushed = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Pending entry = batch.get(i);
+            Job job = withVersion(entry.job(), entry.baseVersion() + 1);
+            if (counts[i] == 0) {
+                logger.warn("Buffered update of job {} dropped, it was changed or deleted since version {}",
+                        job.getId(), entry.baseVersion());
+                conflicts.increment();
+                jobCache.invalidate(job);
+                continue;
+            }
+            // drivers may report SUCCESS_NO_INFO for batched statements, or EXECUTE_FAILED when they go on past a failed one
+            if (counts[i] < 0 && counts[i] != Statement.SUCCESS_NO_INFO) {
+                logger.warn("Buffered update of job {} dropped, the database rejected it", job.getId());
+                conflicts.increment();
+                jobCache.invalidate(job);
+                continue;
+            }
+            flushed.add(job);
+            jobStatsCounter.changed(entry.previousStatus(), job.getJobType(), job.getStatus(), job.getJobType());
+            String previousStatus = entry.previousStatus().equals(job.getStatus()) ? null : entry.previousStatus();
+            eventPublisher.publishEvent(JobEvent.of(JobEvent.Type.UPDATED, job, previousStatus));
+        }
+        jobCache.invalidate(flushed);
+        jobCache.evict(batch.stream().map(entry -> JobCache.statusKey(entry.previousStatus())).distinct().toList());
+        written.increment(flushed.size());
+        logger.debug("Write-behind flush wrote {} of {} jobs", flushed.size(), batch.size());
+    }
+
+    private void requeue(List<Pending> batch) {
+        swapLock.writeLock().lock();
+        try {
+            for (Pending failed : batch) {
+                // a newer buffered state was based on the failed one; it now has to be written over the old row
+                pending.merge(failed.job().getId(), failed,
+                        (newer, old) -> new Pending(newer.job(), old.baseVersion(), old.baseCreatedAt(), old.previousStatus()));
+            }
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private SqlParameterSource parameters(Pending entry) {
+        Job job = entry.job();
+        // JobService registered the status before buffering the update
+        return new MapSqlParameterSource()
+                .addValue("jobName", job.getJobName())
+                .addValue("statusId", jobDictionary.statuses().code(job.getStatus()).orElseThrow())
+                .addValue("createdAt", job.getCreatedAt())
+                .addValue("updatedAt", job.getUpdatedAt())
+                .addValue("id", job.getId())
+                .addValue("baseCreatedAt", entry.baseCreatedAt())
+                .addValue("version", entry.baseVersion());
+    }
+
+    private static Job withVersion(Job job, long version) {
+        Job copy = copy(job);
+        copy.setVersion(version);
+        return copy;
+    }
+
+    private static Job copy(Job job) {
+        Job copy = new Job(job.getJobName(), job.getStatus(), job.getCreatedAt(), job.getUpdatedAt(), job.getJobType(),
+                job.getSensitiveData());
+        copy.setId(job.getId());
+        copy.setUuid(job.getUuid());
+        copy.setVersion(job.getVersion());
+        copy.setLeaseExpiresAt(job.getLeaseExpiresAt());
+        return copy;
+    }
+}
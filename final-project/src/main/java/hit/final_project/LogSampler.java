@@ -0,0 +1,27 @@
+package hit.final_project;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-endpoint log sampling for hot read paths: the first call of every
+ * endpoint is logged and then one call in app.logging.sample-rate,
+ * so logging cost does not grow with request rate.
+ */
+@Component
+public class LogSampler {
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+    private final int sampleRate;
+
+    public LogSampler(@Value("${app.logging.sample-rate:100}") int sampleRate) {
+        this.sampleRate = Math.max(sampleRate, 1);
+    }
+
+    public boolean sample(String endpoint) {
+        return calls.computeIfAbsent(endpoint, key -> new AtomicLong()).getAndIncrement() % sampleRate == 0;
+    }
+}
@@ -0,0 +1,39 @@
+package hit.final_project;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Metrics that Spring Boot does not register on its own.
+ * HTTP, repository, Hikari and Hibernate session metrics are auto-configured;
+ * this adds support for @Timed and a gauge of slow queries seen by Hibernate.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * Number of distinct queries that took longer than hibernate.log_slow_query.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerSlowQueryGauge(ApplicationReadyEvent event) {
+        MeterRegistry meterRegistry = event.getApplicationContext().getBean(MeterRegistry.class);
+        Statistics statistics = event.getApplicationContext().getBean(EntityManagerFactory.class)
+                .unwrap(SessionFactory.class).getStatistics();
+        Gauge.builder("hibernate.slow.queries", statistics, s -> s.getSlowQueries().size())
+                .description("Distinct queries slower than hibernate.log_slow_query")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,70 @@
+package hit.final_project;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Routes read-only transactions to a read replica when app.datasource.replica.url is set.
+ * The primary dataSource bean, as configured by the active profile, is wrapped in a
+ * ReadReplicaRoutingDataSource together with a second Hikari pool for the replica,
+ * sized by app.datasource.replica.maximum-pool-size. When the connection limiter is
+ * on, both pools are limited.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.url")
+public class ReadReplicaConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaConfig.class);
+
+    @Bean
+    static BeanPostProcessor readReplicaPostProcessor(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        class ReadReplicaPostProcessor implements BeanPostProcessor, Ordered {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource primary)) {
+                    return bean;
+                }
+                DataSource replica = replicaPool(environment);
+                if (environment.getProperty("app.datasource.limiter.enabled", Boolean.class, false)) {
+                    replica = VirtualThreadConfig.limit((HikariDataSource) replica, "replica", environment, meterRegistry.getObject());
+                }
+                logger.info("Routing read-only transactions to {}", environment.getProperty("app.datasource.replica.url"));
+                return new ReadReplicaRoutingDataSource(primary, replica,
+                        environment.getProperty("app.datasource.replica.check-interval", Duration.class, Duration.ofSeconds(5)),
+                        environment.getProperty("app.datasource.replica.max-lag", Duration.class, Duration.ofSeconds(10)),
+                        environment.getProperty("app.datasource.replica.lag-query"),
+                        meterRegistry.getObject());
+            }
+
+            @Override
+            public int getOrder() {
+                return VirtualThreadConfig.LIMITER_ORDER + 1;
+            }
+        }
+        return new ReadReplicaPostProcessor();
+    }
+
+    private static HikariDataSource replicaPool(Environment environment) {
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName("replica");
+        replica.setJdbcUrl(environment.getRequiredProperty("app.datasource.replica.url"));
+        replica.setUsername(environment.getProperty("app.datasource.replica.username",
+                environment.getProperty("spring.datasource.username")));
+        replica.setPassword(environment.getProperty("app.datasource.replica.password",
+                environment.getProperty("spring.datasource.password")));
+        replica.setMaximumPoolSize(environment.getProperty("app.datasource.replica.maximum-pool-size", Integer.class, 10));
+        replica.setReadOnly(true);
+        return replica;
+    }
+}
@@ -0,0 +1,126 @@
+package hit.final_project;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends connections of read-only transactions to a read replica and everything else to the primary.
+ * <p>
+ * Connections are handed out lazily, so the physical connection is only chosen
+ * once the transaction has marked it read-only. The replica is checked every
+ * check interval; while it is unreachable, or its replication lag (measured by
+ * the optional lag query, in seconds) exceeds the maximum, read-only work goes
+ * to the primary as well. A replica that fails to hand out a connection is
+ * taken out of rotation until the next successful check.
+ */
+public class ReadReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final Duration maxLag;
+    private final String lagQuery;
+    private final ScheduledExecutorService healthCheck;
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+    private volatile boolean replicaUsable = true;
+    private volatile double lagSeconds;
+
+    public ReadReplicaRoutingDataSource(DataSource primary, DataSource replica, Duration checkInterval, Duration maxLag,
+                                        String lagQuery, MeterRegistry meterRegistry) {
+        super(primary);
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLag = maxLag;
+        this.lagQuery = lagQuery == null || lagQuery.isBlank() ? null : lagQuery;
+        setReadOnlyDataSource(new DelegatingDataSource(replica) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return readOnlyConnection();
+            }
+        });
+        this.replicaReads = Counter.builder("jobs.datasource.reads").tag("target", "replica").register(meterRegistry);
+        this.primaryReads = Counter.builder("jobs.datasource.reads").tag("target", "primary").register(meterRegistry);
+        Gauge.builder("jobs.datasource.replica.usable", this, routing -> routing.replicaUsable ? 1 : 0).register(meterRegistry);
+        Gauge.builder("jobs.datasource.replica.lag", this, routing -> routing.lagSeconds)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.healthCheck = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("replica-health-check").factory());
+        if (!checkInterval.isZero()) {
+            healthCheck.scheduleWithFixedDelay(this::checkReplica, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Connection readOnlyConnection() throws SQLException {
+        if (replicaUsable) {
+            try {
+                Connection connection = replica.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                replicaUsable = false;
+                logger.warn("Read replica unavailable, reading from the primary: {}", e.getMessage());
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Takes the replica out of rotation while it is unreachable or lagging, and back in once it recovers
+     */
+    void checkReplica() {
+        boolean usable;
+        try (Connection connection = replica.getConnection(); Statement statement = connection.createStatement()) {
+            if (lagQuery == null) {
+                usable = connection.isValid(5);
+            } else {
+                try (ResultSet lag = statement.executeQuery(lagQuery)) {
+                    lagSeconds = lag.next() ? lag.getDouble(1) : 0;
+                }
+                usable = lagSeconds * 1000 <= maxLag.toMillis();
+            }
+        } catch (SQLException e) {
+            usable = false;
+        }
+        if (usable != replicaUsable) {
+            if (usable) {
+                logger.info("Read replica back in rotation");
+            } else {
+                logger.warn("Read replica taken out of rotation (lag {}s)", lagSeconds);
+            }
+        }
+        replicaUsable = usable;
+    }
+
+    boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    @Override
+    public void close() throws Exception {
+        healthCheck.shutdownNow();
+        if (replica instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package hit.final_project;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Remote cache tier backed by the redis service from docker-compose.
+ * Enabled with app.cache.remote=redis.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.remote", havingValue = "redis")
+public class RedisCacheStore implements RemoteCacheStore {
+    private static final String PREFIX = "jobs:v1:";
+    private final StringRedisTemplate redisTemplate;
+
+    @Autowired
+    public RedisCacheStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public String get(String key) {
+        return redisTemplate.opsForValue().get(PREFIX + key);
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        redisTemplate.opsForValue().set(PREFIX + key, value, ttl);
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, String value, Duration ttl) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(PREFIX + key, value, ttl));
+    }
+
+    @Override
+    public void putAll(Collection<String> keys, String value, Duration ttl) {
+        // one round trip for all keys
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection strings = (StringRedisConnection) connection;
+            keys.forEach(key -> strings.pSetEx(PREFIX + key, ttl.toMillis(), value));
+            return null;
+        });
+    }
+}
@@ -0,0 +1,24 @@
+package hit.final_project;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Shared (second tier) store behind the in-process job cache.
+ * Values are the JSON form of the cached objects.
+ */
+public interface RemoteCacheStore {
+    String get(String key);
+
+    void put(String key, String value, Duration ttl);
+
+    /**
+     * @return false if the key already had a value, which is kept
+     */
+    boolean putIfAbsent(String key, String value, Duration ttl);
+
+    /**
+     * Sets all keys to the same value
+     */
+    void putAll(Collection<String> keys, String value, Duration ttl);
+}
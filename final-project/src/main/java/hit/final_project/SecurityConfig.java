@@ -1,25 +1,53 @@
 package hit.final_project;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 @Configuration
 public class SecurityConfig {
 
+    /**
+     * BCrypt encoder for job sensitive data.
+     * Uses app.hashing.strength, unless app.hashing.target-millis is set, in which
+     * case the strength is calibrated at startup to hit that time per hash
+     * (never going below app.hashing.min-strength).
+     */
     @Bean
-    public BCryptPasswordEncoder sensitiveDataEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder sensitiveDataEncoder(@Value("${app.hashing.strength:10}") int strength,
+                                                      @Value("${app.hashing.target-millis:0}") long targetMillis,
+                                                      @Value("${app.hashing.min-strength:8}") int minStrength) {
+        if (targetMillis > 0) {
+            return new BCryptPasswordEncoder(SensitiveDataHasher.calibrateStrength(targetMillis, minStrength));
+        }
+        return new BCryptPasswordEncoder(strength);
     }
 
+    /**
+     * @param rateLimitEnabled app.ratelimit.enabled, per-client budgets and the adaptive concurrency limit on /api/jobs
+     * @param concurrencyEnabled app.ratelimit.concurrency.enabled, the adaptive concurrency limit alone
+     */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, ClientRateLimiter rateLimiter,
+                                                   AdaptiveConcurrencyLimiter concurrencyLimiter, MeterRegistry meterRegistry,
+                                                   @Value("${app.ratelimit.enabled:false}") boolean rateLimitEnabled,
+                                                   @Value("${app.ratelimit.concurrency.enabled:true}") boolean concurrencyEnabled) throws Exception {
+        if (rateLimitEnabled) {
+            http.addFilterBefore(new JobRateLimitFilter(rateLimiter, concurrencyLimiter, meterRegistry, concurrencyEnabled),
+                    AuthorizationFilter.class);
+        }
         http
                 .authorizeHttpRequests(authorizeRequests ->
                         authorizeRequests
                                 .requestMatchers("/api/jobs/**").permitAll() // Allow public access to /api/jobs/*
+                                .requestMatchers("/actuator/health/**", "/actuator/metrics/**", "/actuator/prometheus").permitAll()
+                                // lets error responses such as 400 for invalid parameters through instead of 403
+                                .requestMatchers("/error").permitAll()
                                 .anyRequest().authenticated() // Other requests require authentication
                 )
                 .csrf(csrf -> csrf.disable()); // Disable CSRF for simplicity (only do this for non-production environments)
@@ -0,0 +1,156 @@
+package hit.final_project;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashes sensitive job data with BCrypt on a dedicated, bounded pool.
+ * BCrypt is deliberately CPU heavy, so it runs on at most app.hashing.threads
+ * threads with a queue of app.hashing.queue-capacity tasks. When the queue is
+ * full new hashes are rejected instead of being computed on the submitting
+ * (request) thread, so a burst of creates cannot tie up the servlet threads.
+ */
+@Component
+public class SensitiveDataHasher implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(SensitiveDataHasher.class);
+    private static final int MIN_STRENGTH = 4;
+    private static final int MAX_STRENGTH = 16;
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer hashTimer;
+    private final Timer queueTimer;
+    private final Counter rejectedCounter;
+    // signalled whenever a hash leaves the queue, for callers waiting to submit
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final Condition capacityFreed = capacityLock.newCondition();
+
+    @Autowired
+    public SensitiveDataHasher(BCryptPasswordEncoder sensitiveDataEncoder, MeterRegistry meterRegistry,
+                               @Value("${app.hashing.threads:0}") int threads,
+                               @Value("${app.hashing.queue-capacity:256}") int queueCapacity) {
+        this.encoder = sensitiveDataEncoder;
+        this.rejectedCounter = Counter.builder("jobs.hashing.rejected")
+                .description("Hash requests rejected because the queue was full")
+                .register(meterRegistry);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("hash-"),
+                (task, pool) -> {
+                    rejectedCounter.increment();
+                    throw new RejectedExecutionException("Sensitive data hashing queue is full");
+                });
+        this.hashTimer = Timer.builder("jobs.hashing.duration")
+                .description("Time spent computing one BCrypt hash")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueTimer = Timer.builder("jobs.hashing.queue.wait")
+                .description("Time a hash request waited for a hashing thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("jobs.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Hash requests waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("jobs.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hashing threads currently busy")
+                .register(meterRegistry);
+        logger.info("Sensitive data hashing pool: {} threads, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * Hashes the value on the hashing pool
+     * @param rawValue value to hash
+     * @return future completed with the BCrypt hash
+     * @throws RejectedExecutionException if the hashing queue is full
+     */
+    public CompletableFuture<String> hashAsync(String rawValue) {
+        long submittedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            queueTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            signalCapacity();
+            return hashTimer.record(() -> encoder.encode(rawValue));
+        }, executor);
+    }
+
+    /**
+     * Waits until the hashing queue has room for another hash, for callers that
+     * would rather wait than be rejected. Room may be taken by another caller
+     * before this one submits, so hashAsync can still reject afterwards.
+     * @param timeout longest time to wait
+     * @return true if the queue had room, false if the timeout passed first
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public boolean awaitCapacity(Duration timeout) throws InterruptedException {
+        long remaining = timeout.toNanos();
+        capacityLock.lock();
+        try {
+            while (executor.getQueue().remainingCapacity() == 0) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = capacityFreed.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            capacityLock.unlock();
+        }
+    }
+
+    private void signalCapacity() {
+        capacityLock.lock();
+        try {
+            capacityFreed.signalAll();
+        } finally {
+            capacityLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * Finds the BCrypt strength whose hash time is closest to, without exceeding,
+     * the target. Each extra strength step doubles the cost, so the time of a
+     * cheap hash is measured and extrapolated, then the result is clamped.
+     * @param targetMillis desired time per hash on this machine
+     * @param minStrength lowest strength that may be returned
+     * @return calibrated strength
+     */
+    static int calibrateStrength(long targetMillis, int minStrength) {
+        int probeStrength = 8;
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(probeStrength);
+        probe.encode("warm-up");
+        int rounds = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            probe.encode("calibration");
+        }
+        double probeMillis = Math.max((System.nanoTime() - start) / 1_000_000.0 / rounds, 0.01);
+        int strength = probeStrength + (int) Math.floor(Math.log(targetMillis / probeMillis) / Math.log(2));
+        int calibrated = Math.max(Math.max(minStrength, MIN_STRENGTH), Math.min(strength, MAX_STRENGTH));
+        logger.info("BCrypt calibration: strength {} took {} ms, target {} ms -> strength {}",
+                probeStrength, String.format("%.2f", probeMillis), targetMillis, calibrated);
+        return calibrated;
+    }
+}
@@ -0,0 +1,31 @@
+package hit.final_project;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Version 7 UUIDs (RFC 9562): a millisecond Unix timestamp, then 12 bits of
+ * sub-millisecond time and 62 random bits.
+ * They sort by creation time, so new uuids are appended at the right edge of
+ * the uuid index instead of landing on a random page of it.
+ * No state is shared between threads; uuids created within the same clock tick
+ * are in random order.
+ */
+final class TimeOrderedUuid {
+
+    private TimeOrderedUuid() {
+    }
+
+    static UUID next() {
+        return at(Instant.now());
+    }
+
+    static UUID at(Instant instant) {
+        long millis = instant.toEpochMilli();
+        long subMillis = (instant.getNano() % 1_000_000) * 4096L / 1_000_000;
+        long mostSigBits = (millis << 16) | 0x7000L | subMillis;
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,63 @@
+package hit.final_project;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Guardrails for spring.threads.virtual.enabled=true, which runs Tomcat
+ * requests and the application task executor on virtual threads.
+ * Virtual threads are cheap enough that the JDBC pool becomes the limit,
+ * so the DataSource is wrapped in a ConnectionLimitingDataSource sized to the
+ * Hikari pool. The limiter follows the virtual thread switch unless
+ * app.datasource.limiter.enabled says otherwise.
+ */
+@Configuration
+public class VirtualThreadConfig {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    /**
+     * Runs before the read replica routing (see ReadReplicaConfig), which wraps the limited primary
+     */
+    static final int LIMITER_ORDER = Ordered.HIGHEST_PRECEDENCE + 10;
+
+    @Bean
+    @ConditionalOnProperty(name = "app.datasource.limiter.enabled", havingValue = "true")
+    static BeanPostProcessor connectionLimiterPostProcessor(Environment environment,
+                                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        class ConnectionLimiterPostProcessor implements BeanPostProcessor, Ordered {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari) {
+                    return limit(hikari, beanName, environment, meterRegistry.getObject());
+                }
+                return bean;
+            }
+
+            @Override
+            public int getOrder() {
+                return LIMITER_ORDER;
+            }
+        }
+        return new ConnectionLimiterPostProcessor();
+    }
+
+    static ConnectionLimitingDataSource limit(HikariDataSource hikari, String pool, Environment environment,
+                                              MeterRegistry meterRegistry) {
+        Duration acquireTimeout = environment.getProperty("app.datasource.limiter.acquire-timeout", Duration.class, Duration.ofSeconds(30));
+        // an unset pool size is -1 until Hikari starts, and then defaults to 10
+        int permits = hikari.getMaximumPoolSize() > 0 ? hikari.getMaximumPoolSize() : 10;
+        logger.info("Limiting {} to {} concurrent connections", pool, permits);
+        return new ConnectionLimitingDataSource(hikari, pool, permits, acquireTimeout, meterRegistry);
+    }
+}
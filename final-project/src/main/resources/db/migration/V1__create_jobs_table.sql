@@ -0,0 +1,15 @@
+-- Schema previously created by spring.jpa.hibernate.ddl-auto=update.
+-- IF NOT EXISTS lets this run on databases that were created that way.
+CREATE SEQUENCE IF NOT EXISTS jobs_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS jobs (
+    id             BIGINT       NOT NULL,
+    uuid           UUID,
+    job_name       VARCHAR(255),
+    status         VARCHAR(255),
+    created_at     TIMESTAMP(6),
+    updated_at     TIMESTAMP(6),
+    job_type       VARCHAR(255),
+    sensitive_data VARCHAR(255),
+    PRIMARY KEY (id)
+);
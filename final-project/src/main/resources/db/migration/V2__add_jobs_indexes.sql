@@ -0,0 +1,6 @@
+-- (status, created_at) also serves equality lookups on status alone,
+-- so there is no separate single-column status index to maintain.
+CREATE INDEX IF NOT EXISTS jobs_status_created_at_idx ON jobs (status, created_at);
+CREATE INDEX IF NOT EXISTS jobs_job_type_idx ON jobs (job_type);
+CREATE INDEX IF NOT EXISTS jobs_created_at_idx ON jobs (created_at);
+CREATE UNIQUE INDEX IF NOT EXISTS jobs_uuid_idx ON jobs (uuid);
@@ -0,0 +1,2 @@
+-- optimistic locking: bumped by Hibernate on every update, exposed to clients as the ETag
+ALTER TABLE jobs ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
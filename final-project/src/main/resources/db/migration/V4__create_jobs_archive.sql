@@ -0,0 +1,16 @@
+-- Expired jobs moved out of the live table by JobRetentionService (app.retention.mode=archive).
+CREATE TABLE IF NOT EXISTS jobs_archive (
+    id             BIGINT       NOT NULL,
+    uuid           UUID,
+    job_name       VARCHAR(255),
+    status         VARCHAR(255),
+    created_at     TIMESTAMP(6),
+    updated_at     TIMESTAMP(6),
+    job_type       VARCHAR(255),
+    sensitive_data VARCHAR(255),
+    version        BIGINT,
+    archived_at    TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS jobs_archive_created_at_idx ON jobs_archive (created_at);
@@ -0,0 +1,6 @@
+-- GET /api/jobs/search filters on job type and orders by created_at, which
+-- (job_type, created_at) serves like (status, created_at) does for status.
+-- It also covers equality lookups on job_type alone.
+DROP INDEX IF EXISTS jobs_job_type_idx;
+CREATE INDEX IF NOT EXISTS jobs_job_type_created_at_idx ON jobs (job_type, created_at);
+CREATE INDEX IF NOT EXISTS jobs_job_name_idx ON jobs (job_name);
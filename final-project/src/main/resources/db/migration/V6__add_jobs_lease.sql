@@ -0,0 +1,3 @@
+-- POST /api/jobs/claim leases the jobs it moves to RUNNING until this time;
+-- RUNNING jobs whose lease expired are put back to PENDING
+ALTER TABLE jobs ADD COLUMN IF NOT EXISTS lease_expires_at TIMESTAMP;
@@ -0,0 +1,53 @@
+-- Statuses and job types are a handful of values repeated on every row.
+-- They move to lookup tables, and jobs and jobs_archive keep SMALLINT codes
+-- (status_id, job_type_id) instead of the strings. JobDictionary holds both
+-- tables in memory and registers new names as jobs are written with them.
+CREATE TABLE job_statuses (
+    id   SMALLINT     NOT NULL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE job_types (
+    id   SMALLINT     NOT NULL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+-- fixed codes for the statuses the claim queue relies on (see the partial indexes of V7_1)
+INSERT INTO job_statuses (id, name) VALUES (1, 'PENDING'), (2, 'RUNNING'), (3, 'SUCCESS'), (4, 'FAILED');
+INSERT INTO job_types (id, name) VALUES (1, 'BUILD'), (2, 'DEPLOY'), (3, 'TEST');
+
+INSERT INTO job_statuses (id, name)
+SELECT (SELECT MAX(id) FROM job_statuses) + ROW_NUMBER() OVER (ORDER BY name), name
+FROM (SELECT status AS name FROM jobs UNION SELECT status FROM jobs_archive) existing
+WHERE name IS NOT NULL AND name NOT IN (SELECT name FROM job_statuses);
+
+INSERT INTO job_types (id, name)
+SELECT (SELECT MAX(id) FROM job_types) + ROW_NUMBER() OVER (ORDER BY name), name
+FROM (SELECT job_type AS name FROM jobs UNION SELECT job_type FROM jobs_archive) existing
+WHERE name IS NOT NULL AND name NOT IN (SELECT name FROM job_types);
+
+ALTER TABLE jobs ADD COLUMN status_id SMALLINT;
+ALTER TABLE jobs ADD COLUMN job_type_id SMALLINT;
+UPDATE jobs SET status_id = (SELECT s.id FROM job_statuses s WHERE s.name = jobs.status),
+                job_type_id = (SELECT t.id FROM job_types t WHERE t.name = jobs.job_type);
+
+ALTER TABLE jobs_archive ADD COLUMN status_id SMALLINT;
+ALTER TABLE jobs_archive ADD COLUMN job_type_id SMALLINT;
+UPDATE jobs_archive SET status_id = (SELECT s.id FROM job_statuses s WHERE s.name = jobs_archive.status),
+                        job_type_id = (SELECT t.id FROM job_types t WHERE t.name = jobs_archive.job_type);
+
+DROP INDEX IF EXISTS jobs_status_created_at_idx;
+DROP INDEX IF EXISTS jobs_job_type_created_at_idx;
+DROP INDEX IF EXISTS jobs_job_type_idx;
+DROP INDEX IF EXISTS jobs_pending_claim_idx;
+DROP INDEX IF EXISTS jobs_running_lease_idx;
+ALTER TABLE jobs DROP COLUMN status;
+ALTER TABLE jobs DROP COLUMN job_type;
+ALTER TABLE jobs_archive DROP COLUMN status;
+ALTER TABLE jobs_archive DROP COLUMN job_type;
+
+ALTER TABLE jobs ADD CONSTRAINT jobs_status_fk FOREIGN KEY (status_id) REFERENCES job_statuses (id);
+ALTER TABLE jobs ADD CONSTRAINT jobs_job_type_fk FOREIGN KEY (job_type_id) REFERENCES job_types (id);
+
+CREATE INDEX jobs_status_created_at_idx ON jobs (status_id, created_at);
+CREATE INDEX jobs_job_type_created_at_idx ON jobs (job_type_id, created_at);
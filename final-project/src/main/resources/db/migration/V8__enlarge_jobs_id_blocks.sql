@@ -0,0 +1,4 @@
+-- Job ids are allocated in blocks of 1000 per nextval (BlockSequenceGenerator).
+-- Each value still reserves the block ending at it, so ids handed out before
+-- the change are never reused.
+ALTER SEQUENCE jobs_seq INCREMENT BY 1000;
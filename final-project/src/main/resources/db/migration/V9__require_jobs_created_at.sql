@@ -0,0 +1,6 @@
+-- created_at is the partition key of the partitioned schema (V8_1), and Hibernate
+-- adds it to the WHERE clause of every update and delete of a job (@PartitionKey
+-- on Job.createdAt), so it can no longer be null. Jobs from before it was required
+-- get their updated_at as creation time, or the time of this migration.
+UPDATE jobs SET created_at = coalesce(updated_at, CURRENT_TIMESTAMP) WHERE created_at IS NULL;
+ALTER TABLE jobs ALTER COLUMN created_at SET NOT NULL;
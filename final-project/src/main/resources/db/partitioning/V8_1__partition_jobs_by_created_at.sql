@@ -0,0 +1,81 @@
+-- PostgreSQL only, applied with the "partitioned" profile.
+-- Rebuilds jobs as a table range partitioned by month of created_at, so date range
+-- queries only scan the matching partitions and retention can drop whole months.
+-- Monthly partitions are created from the oldest job up to three months ahead;
+-- JobRetentionService keeps creating them ahead of time. Rows outside every
+-- monthly range land in jobs_pdefault.
+-- created_at becomes part of the primary key, so jobs without one get their
+-- updated_at, as V9 does for the other schemas.
+DO $$
+DECLARE
+    month_start TIMESTAMP;
+    last_month  TIMESTAMP := date_trunc('month', now()) + INTERVAL '3 months';
+BEGIN
+    UPDATE jobs SET created_at = coalesce(updated_at, CURRENT_TIMESTAMP) WHERE created_at IS NULL;
+
+    CREATE TABLE jobs_partitioned (LIKE jobs INCLUDING DEFAULTS) PARTITION BY RANGE (created_at);
+
+    month_start := date_trunc('month', coalesce((SELECT min(created_at) FROM jobs), now()));
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF jobs_partitioned FOR VALUES FROM (%L) TO (%L)',
+                       'jobs_p' || to_char(month_start, 'YYYY_MM'), month_start, month_start + INTERVAL '1 month');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+
+    CREATE TABLE jobs_pdefault PARTITION OF jobs_partitioned DEFAULT;
+
+    INSERT INTO jobs_partitioned (id, uuid, job_name, status_id, created_at, updated_at, job_type_id, sensitive_data, version, lease_expires_at)
+    SELECT id, uuid, job_name, status_id, created_at, updated_at, job_type_id, sensitive_data, version, lease_expires_at
+    FROM jobs;
+
+    DROP TABLE jobs;
+    ALTER TABLE jobs_partitioned RENAME TO jobs;
+    ALTER TABLE jobs ADD PRIMARY KEY (id, created_at);
+    ALTER TABLE jobs ADD CONSTRAINT jobs_status_fk FOREIGN KEY (status_id) REFERENCES job_statuses (id);
+    ALTER TABLE jobs ADD CONSTRAINT jobs_job_type_fk FOREIGN KEY (job_type_id) REFERENCES job_types (id);
+
+    -- the indexes of V5_1, V7 and V7_1
+    CREATE INDEX jobs_status_created_at_idx ON jobs (status_id, created_at);
+    CREATE INDEX jobs_job_type_created_at_idx ON jobs (job_type_id, created_at);
+    CREATE INDEX jobs_created_at_idx ON jobs (created_at);
+    CREATE INDEX jobs_job_name_prefix_idx ON jobs (job_name varchar_pattern_ops);
+    CREATE INDEX jobs_pending_claim_idx ON jobs (job_type_id, created_at) WHERE status_id = 1;
+    CREATE INDEX jobs_running_lease_idx ON jobs (lease_expires_at) WHERE status_id = 2;
+    CREATE INDEX jobs_uuid_idx ON jobs (uuid);
+END $$;
+
+-- A unique index on a partitioned table has to include created_at, so neither id nor
+-- uuid could be unique across the table, and a lookup by either would probe every
+-- partition. job_keys holds the created_at of every job under its id and uuid:
+-- JobLookupRepositoryImpl reads it first and PostgreSQL then scans one partition,
+-- and a second job with the same uuid fails with a unique violation. Triggers keep
+-- it in step with jobs; dropped partitions fire none, so JobRetentionService removes
+-- their keys itself.
+CREATE TABLE job_keys (
+    id         BIGINT    NOT NULL PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL,
+    uuid       UUID      UNIQUE
+);
+
+INSERT INTO job_keys (id, created_at, uuid)
+SELECT id, created_at, uuid FROM jobs;
+
+CREATE FUNCTION jobs_track_keys() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP <> 'INSERT' THEN
+        DELETE FROM job_keys WHERE id = OLD.id;
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        INSERT INTO job_keys (id, created_at, uuid) VALUES (NEW.id, NEW.created_at, NEW.uuid);
+    END IF;
+    RETURN NULL;
+END $$;
+
+-- a job moved to another partition by a created_at change fires the delete and insert triggers
+CREATE TRIGGER jobs_keys_insert AFTER INSERT ON jobs
+    FOR EACH ROW EXECUTE FUNCTION jobs_track_keys();
+CREATE TRIGGER jobs_keys_delete AFTER DELETE ON jobs
+    FOR EACH ROW EXECUTE FUNCTION jobs_track_keys();
+CREATE TRIGGER jobs_keys_update AFTER UPDATE OF uuid, created_at ON jobs
+    FOR EACH ROW WHEN (OLD.uuid IS DISTINCT FROM NEW.uuid OR OLD.created_at IS DISTINCT FROM NEW.created_at)
+    EXECUTE FUNCTION jobs_track_keys();
@@ -1,5 +1,12 @@
 package hit.final_project;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -8,15 +15,77 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.web.context.WebApplicationContext;
 
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
+@AutoConfigureMockMvc
 class FinalProjectApplicationTests {
 
 	private static final Logger logger = LoggerFactory.getLogger(FinalProjectApplicationTests.class);
@@ -27,11 +96,53 @@ class FinalProjectApplicationTests {
 	@Autowired
 	private JobRepository jobRepo;
 
+	@Autowired
+	private JobEventStream jobEventStream;
+
+	@Autowired
+	private JobRetentionService jobRetentionService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private RemoteCacheStore remoteCacheStore;
+
+	@Autowired
+	private SensitiveDataHasher sensitiveDataHasher;
+
+	@Autowired
+	private JobWriteBehindBuffer writeBehindBuffer;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private AutowireCapableBeanFactory beanFactory;
+
+	@Autowired
+	private MockMvc mockMvc;
+
 	@BeforeEach
 	void setUp() {
 		jobRepo.deleteAll();
 	}
 
+	/**
+	 * A JobService like the application's, hashing and buffering updates through the given beans
+	 */
+	private JobService serviceWith(SensitiveDataHasher hasher, JobWriteBehindBuffer buffer) {
+		JobService service = new JobService(jobRepo, hasher, beanFactory.getBean(PlatformTransactionManager.class),
+				beanFactory.getBean("applicationTaskExecutor", Executor.class), beanFactory.getBean(JobCache.class),
+				beanFactory.getBean(JobStatsCounter.class), beanFactory.getBean(LogSampler.class), eventPublisher,
+				beanFactory.getBean(JobIdempotencyKeys.class), buffer, beanFactory.getBean(JobDictionary.class));
+		beanFactory.autowireBean(service);
+		return service;
+	}
+
 	@Nested
 	class CreateJobTests {
 
@@ -147,6 +258,114 @@ class FinalProjectApplicationTests {
 			RuntimeException exception = assertThrows(RuntimeException.class, () -> jobService.updateJob(job.getId(), job));
 			assertEquals("Job name cannot be empty and Status cannot be null", exception.getMessage());
 		}
+
+		@Test
+		void testUpdateWithStaleVersionIsRejected() {
+			logger.info("Running testUpdateWithStaleVersionIsRejected");
+			Job job = jobService.createJobAsync(new Job("Versioned Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			Long readVersion = job.getVersion();
+
+			Job first = jobService.updateJob(job.getId(), new Job("Versioned Job", "RUNNING", job.getCreatedAt(), LocalDateTime.now(), "BUILD"), readVersion);
+			assertEquals(readVersion + 1, first.getVersion());
+			assertThrows(OptimisticLockingFailureException.class, () -> jobService.updateJob(job.getId(),
+					new Job("Versioned Job", "FAILED", job.getCreatedAt(), LocalDateTime.now(), "BUILD"), readVersion));
+			assertEquals("RUNNING", jobRepo.findById(job.getId()).orElseThrow().getStatus());
+		}
+
+		@Test
+		void testUnchangedUpdateIsNotWritten() {
+			logger.info("Running testUnchangedUpdateIsNotWritten");
+			Job created = jobService.createJobAsync(new Job("Unchanged Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			// the stored dates, at the precision of the database column
+			Job job = jobRepo.findById(created.getId()).orElseThrow();
+			Job same = jobService.updateJob(job.getId(), new Job("Unchanged Job", "PENDING", job.getCreatedAt(), job.getUpdatedAt(), "BUILD"));
+			assertEquals(job.getVersion(), same.getVersion());
+		}
+
+		@Test
+		void testPatchChangesOnlyGivenFields() {
+			logger.info("Running testPatchChangesOnlyGivenFields");
+			Job job = jobService.createJobAsync(new Job("Patched Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+			JobPatchDTO patch = new JobPatchDTO();
+			patch.setStatus("SUCCESS");
+
+			Job patched = jobService.patchJob(job.getId(), patch, job.getVersion());
+
+			assertEquals("SUCCESS", patched.getStatus());
+			assertEquals("Patched Job", patched.getJobName());
+			assertEquals(job.getSensitiveData(), jobRepo.findById(job.getId()).orElseThrow().getSensitiveData());
+			assertEquals(job.getVersion() + 1, patched.getVersion());
+		}
+
+		@Test
+		void testGetReturnsETagAndHonoursIfNoneMatch() throws Exception {
+			logger.info("Running testGetReturnsETagAndHonoursIfNoneMatch");
+			Job job = jobService.createJobAsync(new Job("Tagged Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			String eTag = "\"" + job.getVersion() + "\"";
+
+			mockMvc.perform(get("/api/jobs/{id}", job.getId()))
+					.andExpect(status().isOk())
+					.andExpect(header().string(HttpHeaders.ETAG, eTag))
+					.andExpect(jsonPath("$.jobName").value("Tagged Job"));
+			mockMvc.perform(get("/api/jobs/{id}", job.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+					.andExpect(status().isNotModified())
+					.andExpect(content().string(""));
+			mockMvc.perform(get("/api/jobs/{id}", job.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"" + (job.getVersion() + 1) + "\""))
+					.andExpect(status().isOk());
+		}
+
+		@Test
+		void testStaleIfMatchIsRejected() throws Exception {
+			logger.info("Running testStaleIfMatchIsRejected");
+			Job job = jobService.createJobAsync(new Job("Guarded Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			String eTag = "\"" + job.getVersion() + "\"";
+			String body = "{\"jobName\":\"Guarded Job\",\"status\":\"RUNNING\",\"jobType\":\"BUILD\"}";
+
+			mockMvc.perform(put("/api/jobs/{id}", job.getId()).header(HttpHeaders.IF_MATCH, eTag)
+							.contentType(MediaType.APPLICATION_JSON).content(body))
+					.andExpect(status().isOk())
+					.andExpect(header().string(HttpHeaders.ETAG, "\"" + (job.getVersion() + 1) + "\""));
+			mockMvc.perform(patch("/api/jobs/{id}", job.getId()).header(HttpHeaders.IF_MATCH, eTag)
+							.contentType(MediaType.APPLICATION_JSON).content("{\"status\":\"FAILED\"}"))
+					.andExpect(status().isPreconditionFailed());
+
+			assertEquals("RUNNING", jobRepo.findById(job.getId()).orElseThrow().getStatus());
+		}
+
+		@Test
+		void testMalformedIfMatchIsBadRequest() throws Exception {
+			logger.info("Running testMalformedIfMatchIsBadRequest");
+			Job job = jobService.createJobAsync(new Job("Guarded Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+
+			mockMvc.perform(patch("/api/jobs/{id}", job.getId()).header(HttpHeaders.IF_MATCH, "v" + job.getVersion())
+							.contentType(MediaType.APPLICATION_JSON).content("{\"status\":\"FAILED\"}"))
+					.andExpect(status().isBadRequest());
+			assertEquals("PENDING", jobRepo.findById(job.getId()).orElseThrow().getStatus());
+
+			mockMvc.perform(patch("/api/jobs/{id}", job.getId()).header(HttpHeaders.IF_MATCH, "*")
+							.contentType(MediaType.APPLICATION_JSON).content("{\"status\":\"FAILED\"}"))
+					.andExpect(status().isOk());
+		}
+
+		@Test
+		void testPatchOverHttpKeepsAbsentFields() throws Exception {
+			logger.info("Running testPatchOverHttpKeepsAbsentFields");
+			Job created = jobService.createJobAsync(new Job("Patched Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "TEST", "secret")).join();
+			Job job = jobRepo.findById(created.getId()).orElseThrow();
+
+			mockMvc.perform(patch("/api/jobs/{id}", job.getId())
+							.contentType(MediaType.APPLICATION_JSON).content("{\"status\":\"SUCCESS\"}"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.status").value("SUCCESS"))
+					.andExpect(jsonPath("$.jobName").value("Patched Job"))
+					.andExpect(jsonPath("$.jobType").value("TEST"));
+
+			Job stored = jobRepo.findById(job.getId()).orElseThrow();
+			assertEquals("Patched Job", stored.getJobName());
+			assertEquals("TEST", stored.getJobType());
+			assertEquals(job.getCreatedAt(), stored.getCreatedAt());
+			assertEquals(job.getSensitiveData(), stored.getSensitiveData());
+		}
 	}
 
 	@Nested
@@ -184,6 +403,17 @@ class FinalProjectApplicationTests {
 			assertEquals("Test Job", foundJob.get().getJobName());
 		}
 
+		@Test
+		void testGetJobByUuid() {
+			logger.info("Running testGetJobByUuid");
+			Job savedJob = jobService.createJobAsync(new Job("Uuid Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+
+			Optional<Job> foundJob = jobService.findJobByUuid(savedJob.getUuid());
+
+			assertTrue(foundJob.isPresent());
+			assertEquals(savedJob.getId(), foundJob.get().getId());
+		}
+
 		@Test
 		void testGetJobByInvalidId() {
 			logger.info("Running testGetJobByInvalidId");
@@ -192,6 +422,1505 @@ class FinalProjectApplicationTests {
 		}
 	}
 
+	@Nested
+	class HashingTests {
+
+		@Test
+		void testCreateJobAsyncHashesSensitiveData() {
+			logger.info("Running testCreateJobAsyncHashesSensitiveData");
+			Job savedJob = jobService.createJobAsync(new Job("Async Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+
+			assertNotNull(savedJob.getId());
+			assertTrue(savedJob.getSensitiveData().startsWith("$2a$"));
+		}
+
+		@Test
+		void testCalibratedStrengthStaysWithinBounds() {
+			logger.info("Running testCalibratedStrengthStaysWithinBounds");
+			assertEquals(8, SensitiveDataHasher.calibrateStrength(1, 8));
+			int strength = SensitiveDataHasher.calibrateStrength(100_000, 8);
+			assertTrue(strength > 8 && strength <= 16);
+		}
+
+		@Test
+		void testFullHashingQueueRejectsInsteadOfHashingOnCaller() {
+			logger.info("Running testFullHashingQueueRejectsInsteadOfHashingOnCaller");
+			CountDownLatch release = new CountDownLatch(1);
+			BCryptPasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+				@Override
+				public String encode(CharSequence rawPassword) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return super.encode(rawPassword);
+				}
+			};
+			SensitiveDataHasher hasher = new SensitiveDataHasher(blockingEncoder, new SimpleMeterRegistry(), 1, 1);
+			try {
+				CompletableFuture<String> running = hasher.hashAsync("first");
+				CompletableFuture<String> queued = hasher.hashAsync("second");
+				assertThrows(RejectedExecutionException.class, () -> hasher.hashAsync("third"));
+
+				release.countDown();
+				assertTrue(running.join().startsWith("$2a$"));
+				assertTrue(queued.join().startsWith("$2a$"));
+			} finally {
+				release.countDown();
+				hasher.destroy();
+			}
+		}
+	}
+
+	@Nested
+	class BatchCreateTests {
+
+		@Test
+		void testCreateJobsReportsFailuresWithoutAbortingBatch() {
+			logger.info("Running testCreateJobsReportsFailuresWithoutAbortingBatch");
+			List<JobCreateDTO> records = List.of(
+					new JobCreateDTO("Batch Job 1", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret"),
+					new JobCreateDTO(" ", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret"),
+					new JobCreateDTO("Batch Job 3", null, LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret"),
+					new JobCreateDTO("Batch Job 4", "SUCCESS", LocalDateTime.now(), LocalDateTime.now(), "TEST", "secret"));
+
+			JobBatchResult result = jobService.createJobs(records.iterator());
+
+			assertEquals(4, result.getReceived());
+			assertEquals(2, result.getCreated());
+			assertEquals(2, result.getFailed());
+			assertNotNull(result.getResults().get(0).getId());
+			assertEquals("Job name cannot be empty", result.getResults().get(1).getError());
+			assertEquals("Job details cannot be null", result.getResults().get(2).getError());
+			assertTrue(jobService.findJobById(result.getResults().get(3).getId()).isPresent());
+		}
+
+		private List<JobCreateDTO> records(String... sensitiveData) {
+			List<JobCreateDTO> records = new ArrayList<>();
+			for (int i = 0; i < sensitiveData.length; i++) {
+				records.add(new JobCreateDTO("Batch Job " + i, "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", sensitiveData[i]));
+			}
+			return records;
+		}
+
+		@Test
+		void testFailedHashIsReportedPerRecord() {
+			logger.info("Running testFailedHashIsReportedPerRecord");
+			BCryptPasswordEncoder failingEncoder = new BCryptPasswordEncoder(4) {
+				@Override
+				public String encode(CharSequence rawPassword) {
+					if ("unhashable".contentEquals(rawPassword)) {
+						throw new IllegalStateException("encoder broke");
+					}
+					return super.encode(rawPassword);
+				}
+			};
+			SensitiveDataHasher hasher = new SensitiveDataHasher(failingEncoder, new SimpleMeterRegistry(), 2, 16);
+			try {
+				JobService service = serviceWith(hasher, writeBehindBuffer);
+				ReflectionTestUtils.setField(service, "batchChunkSize", 2);
+
+				JobBatchResult result = service.createJobs(records("secret", "unhashable", "secret", "secret").iterator());
+
+				assertEquals(4, result.getReceived());
+				assertEquals(3, result.getCreated());
+				assertEquals(1, result.getFailed());
+				assertEquals(List.of(0, 1, 2, 3), result.getResults().stream().map(JobBatchResult.RecordResult::getIndex).toList());
+				assertNull(result.getResults().get(1).getId());
+				assertTrue(result.getResults().get(1).getError().contains("encoder broke"));
+				assertEquals(3, jobRepo.count());
+			} finally {
+				hasher.destroy();
+			}
+		}
+
+		/**
+		 * Reads the records, running the action just before the record at the index is read
+		 */
+		private Iterator<JobCreateDTO> beforeRecord(int index, List<JobCreateDTO> records, Runnable action) {
+			Iterator<JobCreateDTO> iterator = records.iterator();
+			return new Iterator<>() {
+				private int next;
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public JobCreateDTO next() {
+					if (next++ == index) {
+						action.run();
+					}
+					return iterator.next();
+				}
+			};
+		}
+
+		/**
+		 * A hasher with one thread and one queue slot, both taken by another request's hashes until released
+		 */
+		private SensitiveDataHasher blockedHasher(CountDownLatch release) {
+			CountDownLatch started = new CountDownLatch(1);
+			BCryptPasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+				@Override
+				public String encode(CharSequence rawPassword) {
+					if ("blocking".contentEquals(rawPassword)) {
+						started.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+					return super.encode(rawPassword);
+				}
+			};
+			return new SensitiveDataHasher(blockingEncoder, new SimpleMeterRegistry(), 1, 1) {
+				@Override
+				public CompletableFuture<String> hashAsync(String rawValue) {
+					if (!"fill".equals(rawValue)) {
+						return super.hashAsync(rawValue);
+					}
+					super.hashAsync("blocking");
+					try {
+						assertTrue(started.await(10, TimeUnit.SECONDS));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return super.hashAsync("other");
+				}
+			};
+		}
+
+		@Test
+		void testBatchWaitsForHashingQueueBetweenChunks() throws Exception {
+			logger.info("Running testBatchWaitsForHashingQueueBetweenChunks");
+			CountDownLatch release = new CountDownLatch(1);
+			SensitiveDataHasher hasher = blockedHasher(release);
+			ExecutorService client = Executors.newSingleThreadExecutor();
+			try {
+				JobService service = serviceWith(hasher, writeBehindBuffer);
+				ReflectionTestUtils.setField(service, "batchChunkSize", 1);
+
+				// the queue fills up after the first chunk is saved, when nothing of the batch is queued
+				Future<JobBatchResult> batch = client.submit(() -> service.createJobs(
+						beforeRecord(1, records("a", "b", "c"), () -> hasher.hashAsync("fill"))));
+				assertThrows(TimeoutException.class, () -> batch.get(200, TimeUnit.MILLISECONDS));
+				release.countDown();
+				JobBatchResult result = batch.get(30, TimeUnit.SECONDS);
+
+				assertEquals(3, result.getCreated());
+				assertEquals(0, result.getFailed());
+				assertEquals(3, jobRepo.count());
+			} finally {
+				release.countDown();
+				client.shutdown();
+				hasher.destroy();
+			}
+		}
+
+		@Test
+		void testBatchStopsWhenHashingQueueStaysFull() {
+			logger.info("Running testBatchStopsWhenHashingQueueStaysFull");
+			CountDownLatch release = new CountDownLatch(1);
+			SensitiveDataHasher hasher = blockedHasher(release);
+			try {
+				JobService service = serviceWith(hasher, writeBehindBuffer);
+				ReflectionTestUtils.setField(service, "batchChunkSize", 1);
+				ReflectionTestUtils.setField(service, "batchHashWait", Duration.ofMillis(100));
+
+				JobBatchResult result = service.createJobs(
+						beforeRecord(1, records("a", "b", "c"), () -> hasher.hashAsync("fill")));
+
+				assertEquals(3, result.getReceived());
+				assertEquals(1, result.getCreated());
+				assertEquals(2, result.getFailed());
+				assertNotNull(result.getResults().get(0).getId());
+				assertTrue(result.getResults().get(1).getError().startsWith("Not processed"));
+				assertTrue(result.getResults().get(2).getError().startsWith("Not processed"));
+				assertEquals(1, jobRepo.count());
+			} finally {
+				release.countDown();
+				hasher.destroy();
+			}
+		}
+	}
+
+	@Nested
+	class IdempotencyTests {
+
+		@Test
+		void testCreateWithSameUuidReturnsFirstJob() {
+			logger.info("Running testCreateWithSameUuidReturnsFirstJob");
+			UUID clientUuid = UUID.randomUUID();
+			Job first = jobService.createJobAsync(new Job("Retried Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret"), clientUuid).join();
+			Job retry = jobService.createJobAsync(new Job("Retried Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret"), clientUuid).join();
+
+			assertEquals(clientUuid, first.getUuid());
+			assertEquals(first.getId(), retry.getId());
+			assertEquals(first.getSensitiveData(), retry.getSensitiveData());
+			assertEquals(1, jobRepo.count());
+		}
+
+		@Test
+		void testRepeatedBatchReplaysRecords() {
+			logger.info("Running testRepeatedBatchReplaysRecords");
+			UUID repeated = UUID.randomUUID();
+			List<JobCreateDTO> records = List.of(
+					new JobCreateDTO("Batch Job 1", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret", repeated),
+					new JobCreateDTO("Batch Job 1", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret", repeated),
+					new JobCreateDTO("Batch Job 2", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "TEST", "secret", UUID.randomUUID()));
+
+			JobBatchResult first = jobService.createJobs(records.iterator());
+			JobBatchResult retry = jobService.createJobs(records.iterator());
+
+			assertEquals(2, first.getCreated());
+			assertEquals(1, first.getReplayed());
+			assertEquals(first.getResults().get(0).getId(), first.getResults().get(1).getId());
+			assertEquals(0, retry.getCreated());
+			assertEquals(3, retry.getReplayed());
+			assertEquals(first.getResults().get(2).getId(), retry.getResults().get(2).getId());
+			assertEquals(2, jobRepo.count());
+		}
+
+		@Test
+		void testIdempotencyKeyResolution() {
+			logger.info("Running testIdempotencyKeyResolution");
+			UUID uuid = UUID.randomUUID();
+
+			assertNull(JobIdempotencyKeys.resolve(null, null));
+			assertEquals(uuid, JobIdempotencyKeys.resolve(uuid.toString(), null));
+			assertEquals(uuid, JobIdempotencyKeys.resolve(null, uuid));
+			assertEquals(JobIdempotencyKeys.resolve("ci-run-42", null), JobIdempotencyKeys.resolve("ci-run-42", null));
+			assertThrows(IllegalArgumentException.class, () -> JobIdempotencyKeys.resolve("ci-run-42", uuid));
+		}
+	}
+
+	@Nested
+	class RateLimitTests {
+
+		@Test
+		void testTokenBucketRefillsAtRate() {
+			logger.info("Running testTokenBucketRefillsAtRate");
+			ClientRateLimiter.Bucket bucket = new ClientRateLimiter.Bucket(2, 2);
+			long now = System.nanoTime();
+
+			assertEquals(0, bucket.tryConsume(now));
+			assertEquals(0, bucket.tryConsume(now));
+			long wait = bucket.tryConsume(now);
+			assertTrue(wait > 0 && wait <= Duration.ofMillis(500).toNanos());
+			assertEquals(0, bucket.tryConsume(now + Duration.ofMillis(500).toNanos()));
+		}
+
+		@Test
+		void testConcurrencyLimitBacksOffOnSlowResponses() {
+			logger.info("Running testConcurrencyLimitBacksOffOnSlowResponses");
+			AtomicLong nanos = new AtomicLong();
+			AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), 4, 2, 8, Duration.ofMillis(20), 0.5, nanos::get);
+			long slowStart = nanos.addAndGet(1);
+			for (int i = 0; i < 4; i++) {
+				assertTrue(limiter.tryAcquire());
+			}
+			assertFalse(limiter.tryAcquire());
+
+			nanos.addAndGet(Duration.ofMillis(30).toNanos());
+			limiter.release(slowStart, true);
+			assertEquals(2, limiter.getLimit());
+			// requests started before the cut do not cut again
+			limiter.release(slowStart, true);
+			assertEquals(2, limiter.getLimit());
+			assertEquals(2, limiter.getInFlight());
+			assertFalse(limiter.tryAcquire());
+
+			limiter.release(nanos.get(), true);
+			limiter.release(nanos.get(), false);
+			assertEquals(0, limiter.getInFlight());
+			assertTrue(limiter.tryAcquire());
+		}
+
+		@Test
+		void testRequestTiers() {
+			logger.info("Running testRequestTiers");
+			assertEquals(ClientRateLimiter.Tier.LIST, JobRateLimitFilter.tier("GET", "/api/jobs"));
+			assertEquals(ClientRateLimiter.Tier.LIST, JobRateLimitFilter.tier("GET", "/api/jobs/status/FAILED"));
+			assertEquals(ClientRateLimiter.Tier.LIST, JobRateLimitFilter.tier("GET", "/api/jobs/search"));
+			assertEquals(ClientRateLimiter.Tier.READ, JobRateLimitFilter.tier("GET", "/api/jobs/42"));
+			assertEquals(ClientRateLimiter.Tier.WRITE, JobRateLimitFilter.tier("POST", "/api/jobs"));
+			assertEquals(ClientRateLimiter.Tier.WRITE, JobRateLimitFilter.tier("DELETE", "/api/jobs/42"));
+		}
+
+		@Autowired
+		private WebApplicationContext context;
+
+		/**
+		 * MockMvc with only the rate limit filter in front of the controllers
+		 */
+		private MockMvc limited(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter) {
+			return MockMvcBuilders.webAppContextSetup(context)
+					.addFilters(new JobRateLimitFilter(rateLimiter, concurrencyLimiter, new SimpleMeterRegistry(), true))
+					.build();
+		}
+
+		@Test
+		void testEmptyBucketIsRejectedWithRetryAfter() throws Exception {
+			logger.info("Running testEmptyBucketIsRejectedWithRetryAfter");
+			MockMvc mockMvc = limited(new ClientRateLimiter(50, 100, 20, 40, 0.1, 2, 100),
+					new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), 10, 1, 10, Duration.ofSeconds(1), 0.9));
+
+			mockMvc.perform(get("/api/jobs")).andExpect(status().isOk());
+			mockMvc.perform(get("/api/jobs")).andExpect(status().isOk());
+			// one list token every 10 seconds
+			mockMvc.perform(get("/api/jobs"))
+					.andExpect(status().isTooManyRequests())
+					.andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+			// the read tier has its own bucket
+			mockMvc.perform(get("/api/jobs/search")).andExpect(status().isTooManyRequests());
+			mockMvc.perform(get("/api/jobs/0")).andExpect(status().isNotFound());
+		}
+
+		@Test
+		void testApiKeysHaveSeparateBuckets() throws Exception {
+			logger.info("Running testApiKeysHaveSeparateBuckets");
+			MockMvc mockMvc = limited(new ClientRateLimiter(50, 100, 20, 40, 0.1, 1, 100),
+					new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), 10, 1, 10, Duration.ofSeconds(1), 0.9));
+
+			mockMvc.perform(get("/api/jobs").header(JobRateLimitFilter.API_KEY_HEADER, "pipeline-a")).andExpect(status().isOk());
+			mockMvc.perform(get("/api/jobs").header(JobRateLimitFilter.API_KEY_HEADER, "pipeline-a"))
+					.andExpect(status().isTooManyRequests());
+
+			mockMvc.perform(get("/api/jobs").header(JobRateLimitFilter.API_KEY_HEADER, "pipeline-b")).andExpect(status().isOk());
+			// without a key the client is its remote address
+			mockMvc.perform(get("/api/jobs")).andExpect(status().isOk());
+			mockMvc.perform(get("/api/jobs")).andExpect(status().isTooManyRequests());
+		}
+
+		@Test
+		void testSaturatedServiceIsRejectedExceptEventStreams() throws Exception {
+			logger.info("Running testSaturatedServiceIsRejectedExceptEventStreams");
+			AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), 1, 1, 1, Duration.ofSeconds(1), 0.9);
+			MockMvc mockMvc = limited(new ClientRateLimiter(50, 100, 20, 40, 5, 20, 100), concurrencyLimiter);
+
+			mockMvc.perform(get("/api/jobs")).andExpect(status().isOk());
+			assertEquals(0, concurrencyLimiter.getInFlight());
+
+			assertTrue(concurrencyLimiter.tryAcquire());
+			try {
+				mockMvc.perform(get("/api/jobs"))
+						.andExpect(status().isServiceUnavailable())
+						.andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+				mockMvc.perform(post("/api/jobs").contentType(MediaType.APPLICATION_JSON).content("{}"))
+						.andExpect(status().isServiceUnavailable());
+
+				MvcResult events = mockMvc.perform(get("/api/jobs/events"))
+						.andExpect(request().asyncStarted())
+						.andExpect(status().isOk())
+						.andReturn();
+				assertEquals(1, concurrencyLimiter.getInFlight());
+				events.getRequest().getAsyncContext().complete();
+			} finally {
+				concurrencyLimiter.release(System.nanoTime(), false);
+			}
+		}
+	}
+
+	@Nested
+	class WriteBehindTests {
+
+		@Autowired
+		private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+		@Autowired
+		private PlatformTransactionManager transactionManager;
+
+		@Autowired
+		private JobCache jobCache;
+
+		@Autowired
+		private JobStatsCounter jobStatsCounter;
+
+		@Autowired
+		private JobDictionary jobDictionary;
+
+		private JobWriteBehindBuffer buffer() {
+			return buffer(namedParameterJdbcTemplate, new SimpleMeterRegistry());
+		}
+
+		private JobWriteBehindBuffer buffer(NamedParameterJdbcTemplate template, MeterRegistry meterRegistry) {
+			return new JobWriteBehindBuffer(template, transactionManager, jobRepo, jobCache,
+					jobStatsCounter, eventPublisher, jobDictionary, meterRegistry, true, 1000, Duration.ofMillis(200));
+		}
+
+
+		@Test
+		void testUpdatesAreCoalescedUntilFlush() {
+			logger.info("Running testUpdatesAreCoalescedUntilFlush");
+			Job job = jobService.createJobAsync(new Job("Chatty Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+			JobWriteBehindBuffer buffer = buffer();
+
+			buffer.update(job.getId(), buffered -> buffered.setStatus("RUNNING"));
+			Job latest = buffer.update(job.getId(), buffered -> buffered.setStatus("SUCCESS"));
+
+			assertEquals(1L, latest.getVersion());
+			assertEquals("PENDING", jobRepo.findById(job.getId()).orElseThrow().getStatus());
+			assertEquals("SUCCESS", buffer.find(job.getId()).orElseThrow().getStatus());
+			assertEquals("SUCCESS", buffer.overlay(List.of(new JobSummary(job.getId(), job.getUuid(), job.getJobName(),
+					"PENDING", job.getCreatedAt(), job.getUpdatedAt(), job.getJobType()))).get(0).status());
+
+			buffer.flush();
+
+			Job stored = jobRepo.findById(job.getId()).orElseThrow();
+			assertEquals("SUCCESS", stored.getStatus());
+			assertEquals(1L, stored.getVersion());
+			assertTrue(buffer.find(job.getId()).isEmpty());
+		}
+
+		@Test
+		void testFlushIsScheduledOnlyWhenEnabled() {
+			logger.info("Running testFlushIsScheduledOnlyWhenEnabled");
+			Job job = jobService.createJobAsync(new Job("Scheduled Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			JobWriteBehindBuffer buffer = buffer();
+			buffer.startFlushing();
+			buffer.update(job.getId(), buffered -> buffered.setStatus("RUNNING"));
+
+			assertFalse(writeBehindBuffer.isFlushing());
+			assertTrue(buffer.isFlushing());
+			buffer.close();
+			assertFalse(buffer.isFlushing());
+			assertEquals("RUNNING", jobRepo.findById(job.getId()).orElseThrow().getStatus());
+		}
+
+		@Test
+		void testFlushDropsUpdateOfChangedRow() {
+			logger.info("Running testFlushDropsUpdateOfChangedRow");
+			Job job = jobService.createJobAsync(new Job("Raced Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+			JobWriteBehindBuffer buffer = buffer();
+
+			buffer.update(job.getId(), buffered -> buffered.setStatus("RUNNING"));
+			jdbcTemplate.update("UPDATE jobs SET status_id = (SELECT id FROM job_statuses WHERE name = 'FAILED'), version = version + 1 WHERE id = ?", job.getId());
+			buffer.flush();
+
+			assertEquals("FAILED", jobRepo.findById(job.getId()).orElseThrow().getStatus());
+			assertTrue(buffer.find(job.getId()).isEmpty());
+		}
+
+		@Test
+		void testFailedBatchStatementIsDroppedAsConflict() {
+			logger.info("Running testFailedBatchStatementIsDroppedAsConflict");
+			Job job = jobService.createJobAsync(new Job("Rejected Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+			NamedParameterJdbcTemplate failing = new NamedParameterJdbcTemplate(namedParameterJdbcTemplate.getJdbcOperations()) {
+				@Override
+				public int[] batchUpdate(String sql, SqlParameterSource[] batchArgs) {
+					int[] counts = new int[batchArgs.length];
+					Arrays.fill(counts, Statement.EXECUTE_FAILED);
+					return counts;
+				}
+			};
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			JobWriteBehindBuffer buffer = buffer(failing, meterRegistry);
+
+			buffer.update(job.getId(), buffered -> buffered.setStatus("RUNNING"));
+			buffer.flush();
+
+			assertTrue(buffer.find(job.getId()).isEmpty());
+			assertEquals(1.0, meterRegistry.counter("jobs.write-behind.conflicts").count());
+			assertEquals(0.0, meterRegistry.counter("jobs.write-behind.writes").count());
+			assertEquals("PENDING", jobService.findJobById(job.getId()).orElseThrow().getStatus());
+		}
+
+		@Test
+		void testClaimWaitsForFlushInProgress() throws Exception {
+			logger.info("Running testClaimWaitsForFlushInProgress");
+			Job job = jobService.createJobAsync(new Job("Finished Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+			CountDownLatch writing = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			NamedParameterJdbcTemplate blocking = new NamedParameterJdbcTemplate(namedParameterJdbcTemplate.getJdbcOperations()) {
+				@Override
+				public int[] batchUpdate(String sql, SqlParameterSource[] batchArgs) {
+					writing.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return super.batchUpdate(sql, batchArgs);
+				}
+			};
+			JobWriteBehindBuffer buffer = buffer(blocking, new SimpleMeterRegistry());
+			JobService service = serviceWith(sensitiveDataHasher, buffer);
+			ExecutorService threads = Executors.newFixedThreadPool(2);
+			try {
+				buffer.update(job.getId(), buffered -> buffered.setStatus("SUCCESS"));
+				Future<?> flush = threads.submit(buffer::flush);
+				assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+				// the buffered change has left pending but is not in the table yet
+				Future<List<Job>> claim = threads.submit(() -> service.claimJobs("BUILD", 1, null));
+				assertThrows(TimeoutException.class, () -> claim.get(200, TimeUnit.MILLISECONDS));
+				release.countDown();
+				flush.get(10, TimeUnit.SECONDS);
+
+				assertTrue(claim.get(10, TimeUnit.SECONDS).isEmpty());
+				Job stored = jobRepo.findById(job.getId()).orElseThrow();
+				assertEquals("SUCCESS", stored.getStatus());
+				assertEquals(1L, stored.getVersion());
+			} finally {
+				release.countDown();
+				threads.shutdown();
+			}
+		}
+	}
+
+	@Nested
+	class ClaimTests {
+
+		@Test
+		void testConcurrentClaimsNeverShareJobs() throws Exception {
+			logger.info("Running testConcurrentClaimsNeverShareJobs");
+			for (int i = 0; i < 20; i++) {
+				jobService.createJobAsync(new Job("Queued Job " + i, "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			}
+			jobService.createJobAsync(new Job("Other Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "DEPLOY")).join();
+
+			ExecutorService workers = Executors.newFixedThreadPool(4);
+			List<Future<List<Long>>> claims = new ArrayList<>();
+			for (int w = 0; w < 4; w++) {
+				claims.add(workers.submit(() -> {
+					List<Long> ids = new ArrayList<>();
+					List<Job> claimed;
+					while (!(claimed = jobService.claimJobs("BUILD", 3, Duration.ofMinutes(5))).isEmpty()) {
+						claimed.forEach(job -> ids.add(job.getId()));
+					}
+					return ids;
+				}));
+			}
+			List<Long> claimedIds = new ArrayList<>();
+			for (Future<List<Long>> claim : claims) {
+				claimedIds.addAll(claim.get(30, TimeUnit.SECONDS));
+			}
+			workers.shutdown();
+
+			assertEquals(20, claimedIds.size());
+			assertEquals(20, new HashSet<>(claimedIds).size());
+			for (Long id : claimedIds) {
+				Job job = jobRepo.findById(id).orElseThrow();
+				assertEquals("RUNNING", job.getStatus());
+				assertNotNull(job.getLeaseExpiresAt());
+			}
+			assertEquals(1, jobService.claimJobs(null, 5, null).size());
+		}
+
+		@Test
+		void testExpiredLeaseIsRequeued() {
+			logger.info("Running testExpiredLeaseIsRequeued");
+			Job abandoned = jobService.createJobAsync(new Job("Abandoned Job", "PENDING", LocalDateTime.now().minusMinutes(1), LocalDateTime.now(), "TEST")).join();
+			Job finished = jobService.createJobAsync(new Job("Finished Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "TEST")).join();
+			JobService service = serviceWith(sensitiveDataHasher, writeBehindBuffer);
+			beanFactory.autowireBean(service);
+			Instant start = Instant.now();
+			ReflectionTestUtils.setField(service, "clock", Clock.fixed(start, ZoneId.systemDefault()));
+			List<Job> claimed = service.claimJobs("TEST", 2, Duration.ofMinutes(1));
+			assertEquals(List.of(abandoned.getId(), finished.getId()), claimed.stream().map(Job::getId).toList());
+
+			Job done = service.updateJob(finished.getId(), new Job("Finished Job", "SUCCESS", finished.getCreatedAt(), LocalDateTime.now(), "TEST"));
+			assertNull(done.getLeaseExpiresAt());
+			assertEquals(0, service.requeueExpiredLeases());
+
+			ReflectionTestUtils.setField(service, "clock", Clock.fixed(start.plus(Duration.ofMinutes(1)).plusSeconds(1), ZoneId.systemDefault()));
+			assertEquals(1, service.requeueExpiredLeases());
+			Job requeued = jobRepo.findById(abandoned.getId()).orElseThrow();
+			assertEquals("PENDING", requeued.getStatus());
+			assertNull(requeued.getLeaseExpiresAt());
+			assertEquals("SUCCESS", jobRepo.findById(finished.getId()).orElseThrow().getStatus());
+		}
+
+		@Test
+		void testInvalidClaimIsRejected() {
+			logger.info("Running testInvalidClaimIsRejected");
+			assertThrows(IllegalArgumentException.class, () -> jobService.claimJobs(null, 0, null));
+			assertThrows(IllegalArgumentException.class, () -> jobService.claimJobs(null, 1, Duration.ZERO));
+		}
+	}
+
+	@Nested
+	class DictionaryTests {
+
+		@Autowired
+		private JobDictionary jobDictionary;
+
+		@Test
+		void testStatusAndJobTypeAreStoredAsCanonicalCodes() {
+			logger.info("Running testStatusAndJobTypeAreStoredAsCanonicalCodes");
+			String status = "ENCODED_" + UUID.randomUUID();
+			Job first = jobService.createJobAsync(new Job("Encoded Job 1", new String(status), LocalDateTime.now(), LocalDateTime.now(), "LINT")).join();
+			Job second = jobService.createJobAsync(new Job("Encoded Job 2", new String(status), LocalDateTime.now(), LocalDateTime.now(), "LINT")).join();
+
+			short code = jobDictionary.statuses().code(status).orElseThrow();
+			assertEquals(code, jdbcTemplate.queryForObject("SELECT status_id FROM jobs WHERE id = ?", Short.class, first.getId()));
+			assertEquals(jobDictionary.jobTypes().code("LINT").orElseThrow(),
+					jdbcTemplate.queryForObject("SELECT job_type_id FROM jobs WHERE id = ?", Short.class, second.getId()));
+			assertSame(jobRepo.findById(first.getId()).orElseThrow().getStatus(), jobRepo.findById(second.getId()).orElseThrow().getStatus());
+			assertEquals(List.of(first.getId(), second.getId()), jobService.getJobsByStatus(status).stream().map(JobSummary::id).toList());
+		}
+
+		@Test
+		void testRegistrationStopsAtMaxSize() {
+			logger.info("Running testRegistrationStopsAtMaxSize");
+			int jobTypes = jdbcTemplate.queryForObject("SELECT count(*) FROM job_types", Integer.class);
+			JobDictionary full = new JobDictionary(jdbcTemplate, jobTypes, Duration.ZERO);
+
+			assertEquals("BUILD", full.jobTypes().register("BUILD"));
+			assertThrows(IllegalArgumentException.class, () -> full.jobTypes().register("NEW_" + UUID.randomUUID()));
+			assertEquals(jobTypes, jdbcTemplate.queryForObject("SELECT count(*) FROM job_types", Integer.class));
+		}
+
+		@Test
+		void testUnknownValuesMatchNothing() {
+			logger.info("Running testUnknownValuesMatchNothing");
+			jobService.createJobAsync(new Job("Known Job", "SUCCESS", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			JobSearchCriteria criteria = new JobSearchCriteria();
+			criteria.setJobType("NEVER_CREATED");
+
+			assertFalse(jobDictionary.jobTypes().contains("NEVER_CREATED"));
+			assertTrue(jobService.getJobsByJobType("NEVER_CREATED").isEmpty());
+			assertEquals(0L, jobService.searchJobs(criteria, null, null, true).getCount());
+			assertTrue(jobService.claimJobs("NEVER_CREATED", 1, null).isEmpty());
+			assertFalse(jobDictionary.jobTypes().contains("NEVER_CREATED"));
+		}
+	}
+
+	@Nested
+	class IdentifierTests {
+
+		@Test
+		void testUuidsAreVersion7AndSortByCreationTime() {
+			logger.info("Running testUuidsAreVersion7AndSortByCreationTime");
+			Instant now = Instant.now();
+			UUID earlier = TimeOrderedUuid.at(now);
+			UUID later = TimeOrderedUuid.at(now.plusNanos(500_000));
+			UUID latest = TimeOrderedUuid.at(now.plusMillis(1));
+
+			assertEquals(7, earlier.version());
+			assertEquals(2, earlier.variant());
+			assertEquals(now.toEpochMilli(), earlier.getMostSignificantBits() >>> 16);
+			// compared as strings, which is the byte order the database sorts uuids in
+			assertTrue(earlier.toString().compareTo(later.toString()) < 0);
+			assertTrue(later.toString().compareTo(latest.toString()) < 0);
+			assertEquals(7, new Job("Uuid Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD").getUuid().version());
+		}
+
+		@Test
+		void testIdsComeFromBlocksWithoutDuplicates() throws Exception {
+			logger.info("Running testIdsComeFromBlocksWithoutDuplicates");
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			List<Future<List<Long>>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(() -> {
+					List<Job> jobs = new ArrayList<>();
+					for (int i = 0; i < 200; i++) {
+						jobs.add(new Job("Block Job " + i, "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD"));
+					}
+					return jobRepo.saveAll(jobs).stream().map(Job::getId).toList();
+				}));
+			}
+			List<Long> ids = new ArrayList<>();
+			for (Future<List<Long>> future : futures) {
+				ids.addAll(future.get(30, TimeUnit.SECONDS));
+			}
+			executor.shutdown();
+
+			assertEquals(800, new HashSet<>(ids).size());
+			// 800 ids span at most two blocks of 1000
+			assertTrue(Collections.max(ids) - Collections.min(ids) < 2000);
+			assertEquals(800, jobRepo.count());
+		}
+	}
+
+	@Nested
+	class PaginationTests {
+
+		@Test
+		void testKeysetPagesCoverAllJobsOnce() {
+			logger.info("Running testKeysetPagesCoverAllJobsOnce");
+			for (int i = 0; i < 5; i++) {
+				jobService.createJobAsync(new Job("Job " + i, "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			}
+
+			List<JobSummary> firstPage = jobService.getJobsPage(null, 3);
+			assertEquals(3, firstPage.size());
+			List<JobSummary> secondPage = jobService.getJobsPage(firstPage.get(2).id(), 3);
+			assertEquals(2, secondPage.size());
+			assertTrue(secondPage.get(0).id() > firstPage.get(2).id());
+		}
+
+		@Test
+		void testPageSizeIsCapped() {
+			logger.info("Running testPageSizeIsCapped");
+			assertEquals(1000, jobService.resolvePageSize(1_000_000));
+			assertEquals(100, jobService.resolvePageSize(null));
+			assertThrows(IllegalArgumentException.class, () -> jobService.resolvePageSize(0));
+		}
+
+		@Test
+		void testStreamAllJobs() {
+			logger.info("Running testStreamAllJobs");
+			Job job = jobService.createJobAsync(new Job("Streamed Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+
+			List<JobSummary> streamed = new ArrayList<>();
+			jobService.streamAllJobs(streamed::add);
+
+			assertEquals(1, streamed.size());
+			assertEquals(job.getId(), streamed.get(0).id());
+			assertEquals("Streamed Job", streamed.get(0).jobName());
+		}
+
+		@Test
+		void testNextCursorHeaderLeadsToNextPage() throws Exception {
+			logger.info("Running testNextCursorHeaderLeadsToNextPage");
+			for (int i = 0; i < 3; i++) {
+				jobService.createJobAsync(new Job("Job " + i, "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			}
+
+			MvcResult firstPage = mockMvc.perform(get("/api/jobs").param("limit", "2"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.length()").value(2))
+					.andReturn();
+			String cursor = firstPage.getResponse().getHeader(JobController.NEXT_CURSOR_HEADER);
+			assertEquals(String.valueOf(objectMapper.readTree(firstPage.getResponse().getContentAsString()).get(1).get("id").asLong()), cursor);
+
+			// the last page is not full, so it has no cursor
+			mockMvc.perform(get("/api/jobs").param("afterId", cursor).param("limit", "2"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.length()").value(1))
+					.andExpect(jsonPath("$[0].jobName").value("Job 2"))
+					.andExpect(header().doesNotExist(JobController.NEXT_CURSOR_HEADER));
+		}
+
+		@Test
+		void testInvalidCursorOrLimitIsBadRequest() throws Exception {
+			logger.info("Running testInvalidCursorOrLimitIsBadRequest");
+			mockMvc.perform(get("/api/jobs").param("afterId", "abc")).andExpect(status().isBadRequest());
+			mockMvc.perform(get("/api/jobs").param("limit", "0")).andExpect(status().isBadRequest());
+		}
+
+		@Test
+		void testNdjsonHasOneJobPerLine() throws Exception {
+			logger.info("Running testNdjsonHasOneJobPerLine");
+			for (int i = 0; i < 3; i++) {
+				jobService.createJobAsync(new Job("Streamed Job " + i, "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+			}
+
+			MvcResult result = mockMvc.perform(get("/api/jobs").accept(JobController.NDJSON))
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith(JobController.NDJSON))
+					.andReturn();
+
+			String[] lines = result.getResponse().getContentAsString().strip().split("\n");
+			assertEquals(3, lines.length);
+			for (int i = 0; i < lines.length; i++) {
+				JsonNode job = objectMapper.readTree(lines[i]);
+				assertTrue(job.isObject());
+				assertEquals("Streamed Job " + i, job.get("jobName").asText());
+				assertFalse(job.has("sensitiveData"));
+			}
+		}
+	}
+
+	@Nested
+	class CacheTests {
+
+		@Test
+		void testFindJobByIdIsServedFromCacheUntilUpdated() {
+			logger.info("Running testFindJobByIdIsServedFromCacheUntilUpdated");
+			Job job = jobService.createJobAsync(new Job("Cached Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			assertEquals("PENDING", jobService.findJobById(job.getId()).orElseThrow().getStatus());
+
+			// a write that bypasses the service is not seen while the entry is cached
+			Job bypass = jobRepo.findById(job.getId()).orElseThrow();
+			bypass.setJobName("Changed Behind The Cache");
+			jobRepo.save(bypass);
+			assertEquals("Cached Job", jobService.findJobById(job.getId()).orElseThrow().getJobName());
+
+			Job update = new Job("Cached Job", "SUCCESS", LocalDateTime.now(), LocalDateTime.now(), "BUILD");
+			jobService.updateJob(job.getId(), update);
+			assertEquals("SUCCESS", jobService.findJobById(job.getId()).orElseThrow().getStatus());
+		}
+
+		@Test
+		void testStatusListIsInvalidatedByCreateAndUpdate() {
+			logger.info("Running testStatusListIsInvalidatedByCreateAndUpdate");
+			int before = jobService.getJobsByStatus("QUEUED").size();
+			Job job = jobService.createJobAsync(new Job("Queued Job", "QUEUED", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			assertEquals(before + 1, jobService.getJobsByStatus("QUEUED").size());
+
+			jobService.updateJob(job.getId(), new Job("Queued Job", "SUCCESS", LocalDateTime.now(), LocalDateTime.now(), "BUILD"));
+			assertEquals(before, jobService.getJobsByStatus("QUEUED").size());
+		}
+
+		@Test
+		void testCachedJobLeavesOutSensitiveData() {
+			logger.info("Running testCachedJobLeavesOutSensitiveData");
+			Job job = jobService.createJobAsync(new Job("Secret Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+
+			assertNull(jobService.findJobById(job.getId()).orElseThrow().getSensitiveData());
+			String cached = remoteCacheStore.get(JobCache.jobKey(job.getId()));
+			assertNotNull(cached);
+			assertFalse(cached.contains(job.getSensitiveData()));
+			assertNull(jobService.findJobById(job.getId()).orElseThrow().getSensitiveData());
+		}
+
+		@Autowired
+		private JobCache jobCache;
+
+		@Test
+		void testLoadedJobIsMaskedOnACopy() {
+			logger.info("Running testLoadedJobIsMaskedOnACopy");
+			Job job = jobService.createJobAsync(new Job("Masked Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD", "secret")).join();
+			Job loaded = jobRepo.findById(job.getId()).orElseThrow();
+
+			Job read = jobCache.getJob(job.getId(), () -> Optional.of(loaded)).orElseThrow();
+
+			assertNull(read.getSensitiveData());
+			assertEquals(job.getSensitiveData(), loaded.getSensitiveData());
+		}
+
+		@Test
+		void testReadRacingAnUpdateDoesNotCacheTheOldRow() {
+			logger.info("Running testReadRacingAnUpdateDoesNotCacheTheOldRow");
+			Job job = jobService.createJobAsync(new Job("Racing Job", "PENDING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			Job stale = jobRepo.findById(job.getId()).orElseThrow();
+
+			// the update commits and evicts after the read loaded the row, before it caches it
+			Job read = jobCache.getJob(job.getId(), () -> {
+				jobService.updateJob(job.getId(), new Job("Racing Job", "SUCCESS", job.getCreatedAt(), LocalDateTime.now(), "BUILD"));
+				return Optional.of(stale);
+			}).orElseThrow();
+
+			assertEquals("PENDING", read.getStatus());
+			assertEquals("SUCCESS", jobService.findJobById(job.getId()).orElseThrow().getStatus());
+		}
+
+		@Test
+		void testInMemoryStoreDropsExpiredEntries() {
+			logger.info("Running testInMemoryStoreDropsExpiredEntries");
+			AtomicLong nanos = new AtomicLong();
+			InMemoryCacheStore store = new InMemoryCacheStore(10, nanos::get);
+			store.put("short", "value", Duration.ofMillis(50));
+			store.put("long", "value", Duration.ofMinutes(1));
+			nanos.addAndGet(Duration.ofMillis(49).toNanos());
+			assertEquals("value", store.get("short"));
+
+			nanos.addAndGet(Duration.ofMillis(1).toNanos());
+			assertNull(store.get("short"));
+			assertEquals("value", store.get("long"));
+		}
+	}
+
+	@Nested
+	class ProjectionTests {
+
+		@Test
+		void testListQueriesReturnSummariesWithoutSensitiveData() {
+			logger.info("Running testListQueriesReturnSummariesWithoutSensitiveData");
+			LocalDateTime createdAt = LocalDateTime.now().minusHours(1);
+			Job job = jobService.createJobAsync(new Job("Projected Job", "PROJECTED", createdAt, createdAt, "DEPLOY", "secret")).join();
+
+			List<JobSummary> byStatus = jobService.getJobsByStatus("PROJECTED");
+			List<JobSummary> byDate = jobService.getJobsByDateRange(createdAt.minusMinutes(1), createdAt.plusMinutes(1));
+
+			assertEquals(List.of(job.getId()), byStatus.stream().map(JobSummary::id).toList());
+			assertEquals(job.getUuid(), byStatus.get(0).uuid());
+			assertTrue(byDate.stream().anyMatch(summary -> summary.id().equals(job.getId())));
+			// the stored entity still carries its hash, only the projections leave it out
+			assertNotNull(jobRepo.findById(job.getId()).orElseThrow().getSensitiveData());
+		}
+	}
+
+	@Nested
+	class SearchTests {
+
+		@Test
+		void testCombinedFiltersMatchAllCriteria() {
+			logger.info("Running testCombinedFiltersMatchAllCriteria");
+			LocalDateTime now = LocalDateTime.now();
+			Job match = jobService.createJobAsync(new Job("deploy-api", "FAILED", now.minusHours(2), now, "DEPLOY")).join();
+			jobService.createJobAsync(new Job("deploy-web", "SUCCESS", now.minusHours(2), now, "DEPLOY")).join();
+			jobService.createJobAsync(new Job("deploy-api", "FAILED", now.minusHours(2), now, "BUILD")).join();
+			jobService.createJobAsync(new Job("build-api", "FAILED", now.minusHours(2), now, "DEPLOY")).join();
+			jobService.createJobAsync(new Job("deploy-old", "FAILED", now.minusDays(5), now, "DEPLOY")).join();
+			jobService.createJobAsync(new Job("deploy%", "FAILED", now.minusHours(2), now, "DEPLOY")).join();
+
+			JobSearchCriteria criteria = new JobSearchCriteria();
+			criteria.setStatus("FAILED");
+			criteria.setJobType("DEPLOY");
+			criteria.setCreatedFrom(now.minusDays(1));
+			criteria.setNamePrefix("deploy-");
+			JobSearchResult result = jobService.searchJobs(criteria, null, null, true);
+
+			assertEquals(List.of(match.getId()), result.getJobs().stream().map(JobSummary::id).toList());
+			assertEquals(1L, result.getCount());
+			assertFalse(result.isCountIsLowerBound());
+			assertNull(result.getNextCursor());
+
+			// LIKE wildcards in the prefix are matched literally
+			criteria.setNamePrefix("deploy%");
+			assertEquals(1, jobService.searchJobs(criteria, null, null, false).getJobs().size());
+		}
+
+		@Test
+		void testKeysetPagesByCreatedAtDescending() {
+			logger.info("Running testKeysetPagesByCreatedAtDescending");
+			LocalDateTime base = LocalDateTime.now().minusDays(1).withNano(0);
+			List<Long> expected = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				// two jobs share every creation time, so the id breaks the ties
+				expected.add(jobService.createJobAsync(new Job("Search Job " + i, "SUCCESS", base.plusMinutes(i / 2), base, "TEST")).join().getId());
+			}
+			expected.sort(Comparator.comparing((Long id) -> jobRepo.findById(id).orElseThrow().getCreatedAt()).thenComparing(id -> id).reversed());
+
+			JobSearchCriteria criteria = new JobSearchCriteria();
+			criteria.setJobType("TEST");
+			criteria.setSort(JobSearchCriteria.SortField.CREATED_AT);
+			criteria.setDescending(true);
+			List<Long> seen = new ArrayList<>();
+			String cursor = null;
+			do {
+				JobSearchResult page = jobService.searchJobs(criteria, cursor, 2, false);
+				page.getJobs().forEach(job -> seen.add(job.id()));
+				cursor = page.getNextCursor();
+			} while (cursor != null);
+
+			assertEquals(expected, seen);
+			assertThrows(IllegalArgumentException.class, () -> jobService.searchJobs(criteria, "not-a-cursor", 2, false));
+		}
+
+		@Test
+		void testCountStopsAtCap() {
+			logger.info("Running testCountStopsAtCap");
+			for (int i = 0; i < 4; i++) {
+				jobService.createJobAsync(new Job("capped-" + i, "SUCCESS", LocalDateTime.now(), LocalDateTime.now(), "TEST")).join();
+			}
+			JobSearchCriteria criteria = new JobSearchCriteria();
+			criteria.setNamePrefix("capped-");
+
+			assertEquals(4, jobRepo.countUpTo(criteria, 10));
+			assertEquals(3, jobRepo.countUpTo(criteria, 2));
+		}
+
+		@Test
+		void testSortParameterIsMapped() throws Exception {
+			logger.info("Running testSortParameterIsMapped");
+			mockMvc.perform(get("/api/jobs/search").param("sort", "createdAt")).andExpect(status().isOk());
+			mockMvc.perform(get("/api/jobs/search").param("sort", "id")).andExpect(status().isOk());
+			mockMvc.perform(get("/api/jobs/search").param("sort", "CREATED_AT")).andExpect(status().isBadRequest());
+		}
+	}
+
+	@Nested
+	class StatsTests {
+
+		@Test
+		void testSummaryTracksWritesAndMatchesDatabase() {
+			logger.info("Running testSummaryTracksWritesAndMatchesDatabase");
+			jobService.resyncStats();
+			LocalDateTime now = LocalDateTime.now();
+			Job failed = jobService.createJobAsync(new Job("Stats Job 1", "RUNNING", now, now, "BUILD")).join();
+			jobService.createJobAsync(new Job("Stats Job 2", "FAILED", now, now, "BUILD")).join();
+			Job deleted = jobService.createJobAsync(new Job("Stats Job 3", "SUCCESS", now, now, "DEPLOY")).join();
+			jobService.updateJob(failed.getId(), new Job("Stats Job 1", "FAILED", now, now, "BUILD"));
+			jobService.deleteJob(deleted.getId());
+
+			JobStats summary = jobService.getStats(null, null, null, false);
+			JobStats exact = jobService.getStats(null, null, null, true);
+
+			assertEquals(2, summary.getTotal());
+			assertEquals(exact.getByStatus(), summary.getByStatus());
+			assertEquals(exact.getByJobType(), summary.getByJobType());
+			assertEquals(1.0, summary.getFailureRateByJobType().get("BUILD"));
+		}
+
+		@Test
+		void testHistogramIsBucketedByDayAndHour() {
+			logger.info("Running testHistogramIsBucketedByDayAndHour");
+			LocalDateTime day = LocalDateTime.now().minusDays(3).withHour(10).withMinute(0).withSecond(0).withNano(0);
+			jobService.createJobAsync(new Job("Histogram Job 1", "SUCCESS", day.plusMinutes(5), day, "BUILD")).join();
+			jobService.createJobAsync(new Job("Histogram Job 2", "FAILED", day.plusMinutes(50), day, "BUILD")).join();
+			jobService.createJobAsync(new Job("Histogram Job 3", "SUCCESS", day.plusHours(2), day, "BUILD")).join();
+
+			List<JobHistogramBucket> daily = jobService.getStats(day.minusDays(1), day.plusDays(1), "day", false).getHistogram();
+			List<JobHistogramBucket> hourly = jobService.getStats(day, day.plusDays(1), "hour", false).getHistogram();
+
+			assertEquals(List.of(new JobHistogramBucket(day.toLocalDate().atStartOfDay(), 3, 1)), daily);
+			assertEquals(List.of(new JobHistogramBucket(day, 2, 1), new JobHistogramBucket(day.plusHours(2), 1, 0)), hourly);
+			assertThrows(IllegalArgumentException.class, () -> jobService.getStats(day, day.minusDays(1), "day", false));
+			assertThrows(IllegalArgumentException.class, () -> jobService.getStats(day.minusYears(1), day, "hour", false));
+		}
+
+		@Test
+		void testOnlyDatabaseQueriesRunInATransaction() {
+			logger.info("Running testOnlyDatabaseQueriesRunInATransaction");
+			PlatformTransactionManager transactionManager = beanFactory.getBean(PlatformTransactionManager.class);
+			List<TransactionDefinition> started = new CopyOnWriteArrayList<>();
+			PlatformTransactionManager recording = new PlatformTransactionManager() {
+				@Override
+				public TransactionStatus getTransaction(TransactionDefinition definition) {
+					started.add(definition);
+					return transactionManager.getTransaction(definition);
+				}
+
+				@Override
+				public void commit(TransactionStatus status) {
+					transactionManager.commit(status);
+				}
+
+				@Override
+				public void rollback(TransactionStatus status) {
+					transactionManager.rollback(status);
+				}
+			};
+			JobService service = new JobService(jobRepo, sensitiveDataHasher, recording,
+					beanFactory.getBean("applicationTaskExecutor", Executor.class), beanFactory.getBean(JobCache.class),
+					beanFactory.getBean(JobStatsCounter.class), beanFactory.getBean(LogSampler.class), eventPublisher,
+					beanFactory.getBean(JobIdempotencyKeys.class), writeBehindBuffer, beanFactory.getBean(JobDictionary.class));
+			beanFactory.autowireBean(service);
+			LocalDateTime now = LocalDateTime.now();
+
+			service.getStats(null, null, null, false);
+			assertTrue(started.isEmpty());
+
+			service.getStats(null, null, null, true);
+			service.getStats(now.minusDays(1), now, "hour", false);
+			assertEquals(2, started.size());
+			assertTrue(started.stream().allMatch(TransactionDefinition::isReadOnly));
+		}
+	}
+
+	@Nested
+	class EventTests {
+
+		@Test
+		void testChangesAreBufferedForReplay() {
+			logger.info("Running testChangesAreBufferedForReplay");
+			String lastSeen = jobEventStream.lastEventId();
+			Job job = jobService.createJobAsync(new Job("Event Job", "RUNNING", LocalDateTime.now(), LocalDateTime.now(), "DEPLOY")).join();
+			jobService.updateJob(job.getId(), new Job("Event Job", "SUCCESS", job.getCreatedAt(), LocalDateTime.now(), "DEPLOY"));
+			jobService.deleteJob(job.getId());
+
+			// scheduled tasks may publish events of other jobs meanwhile
+			List<JobEvent> missed = jobEventStream.eventsSince(lastSeen).stream()
+					.map(envelope -> (JobEvent) envelope.data())
+					.filter(event -> event.job().id().equals(job.getId()))
+					.toList();
+
+			assertEquals(List.of(JobEvent.Type.CREATED, JobEvent.Type.UPDATED, JobEvent.Type.DELETED),
+					missed.stream().map(JobEvent::type).toList());
+			assertEquals("RUNNING", missed.get(1).previousStatus());
+			assertTrue(missed.get(1).matches("RUNNING", "DEPLOY"));
+			assertFalse(missed.get(1).matches("FAILED", null));
+			assertTrue(jobEventStream.eventsSince(jobEventStream.lastEventId()).isEmpty());
+		}
+
+		@Test
+		void testUnknownLastEventIdCannotBeReplayed() {
+			logger.info("Running testUnknownLastEventIdCannotBeReplayed");
+			assertNull(jobEventStream.eventsSince("previous-instance-42"));
+		}
+
+		@Autowired
+		private MeterRegistry meterRegistry;
+
+		private double subscribers() {
+			return meterRegistry.get("jobs.events.subscribers").gauge().value();
+		}
+
+		/**
+		 * Waits for the sender thread to write the whole event starting with the expected text;
+		 * an event is written in several pieces and ends with a blank line
+		 */
+		private String awaitContent(MvcResult result, String expected) {
+			return await().atMost(Duration.ofSeconds(5)).until(() -> result.getResponse().getContentAsString(),
+					content -> content.contains(expected) && content.indexOf("\n\n", content.indexOf(expected)) >= 0);
+		}
+
+		@Test
+		void testEventStreamReplaysFromLastEventId() throws Exception {
+			logger.info("Running testEventStreamReplaysFromLastEventId");
+			String lastSeen = jobEventStream.lastEventId();
+			Job job = jobService.createJobAsync(new Job("Streamed Event Job", "RUNNING", LocalDateTime.now(), LocalDateTime.now(), "DEPLOY")).join();
+			jobService.createJobAsync(new Job("Filtered Out Job", "RUNNING", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			String created = jobEventStream.lastEventId();
+			double before = subscribers();
+
+			MvcResult result = mockMvc.perform(get("/api/jobs/events").param("jobType", "DEPLOY").header("Last-Event-ID", lastSeen))
+					.andExpect(request().asyncStarted())
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+					.andReturn();
+			assertEquals(before + 1, subscribers());
+
+			String replayed = awaitContent(result, "event:created");
+			assertTrue(replayed.contains("Streamed Event Job"));
+			assertFalse(replayed.contains("Filtered Out Job"));
+
+			jobService.updateJob(job.getId(), new Job("Streamed Event Job", "SUCCESS", job.getCreatedAt(), LocalDateTime.now(), "DEPLOY"));
+			String updated = jobEventStream.eventsSince(created).stream()
+					.filter(envelope -> ((JobEvent) envelope.data()).job().id().equals(job.getId()))
+					.findFirst().orElseThrow().id();
+			String live = awaitContent(result, "event:updated");
+			assertTrue(live.contains("id:" + updated + "\n"));
+			assertFalse(live.contains("id:" + created + "\n"));
+
+			// the client disconnects
+			result.getRequest().getAsyncContext().complete();
+			assertEquals(before, subscribers());
+			jobService.deleteJob(job.getId());
+			assertFalse(result.getResponse().getContentAsString().contains("event:deleted"));
+		}
+
+		@Test
+		void testEventStreamResetsUnknownLastEventId() throws Exception {
+			logger.info("Running testEventStreamResetsUnknownLastEventId");
+			MvcResult result = mockMvc.perform(get("/api/jobs/events").header("Last-Event-ID", "previous-instance-42"))
+					.andExpect(request().asyncStarted())
+					.andReturn();
+
+			assertTrue(awaitContent(result, "event:reset").contains("event:reset"));
+			result.getRequest().getAsyncContext().complete();
+		}
+	}
+
+	@Nested
+	class RetentionTests {
+
+		@Test
+		void testExpiredJobsAreArchivedByStatusPolicy() {
+			logger.info("Running testExpiredJobsAreArchivedByStatusPolicy");
+			LocalDateTime old = LocalDateTime.now().minusDays(200);
+			Job expired = jobService.createJobAsync(new Job("Old Job", "SUCCESS", old, old, "BUILD")).join();
+			Job running = jobService.createJobAsync(new Job("Old Running Job", "RUNNING", old, old, "BUILD")).join();
+			Job recent = jobService.createJobAsync(new Job("Recent Job", "SUCCESS", LocalDateTime.now(), LocalDateTime.now(), "BUILD")).join();
+			jobService.findJobById(expired.getId());
+			String lastSeen = jobEventStream.lastEventId();
+
+			long removed = jobRetentionService.purgeJobsCreatedBefore(LocalDateTime.now().minusDays(90));
+
+			assertEquals(1, removed);
+			assertFalse(jobRepo.existsById(expired.getId()));
+			assertTrue(jobRepo.existsById(running.getId()));
+			assertTrue(jobRepo.existsById(recent.getId()));
+			assertEquals("Old Job", jdbcTemplate.queryForObject("SELECT job_name FROM jobs_archive WHERE id = ?", String.class, expired.getId()));
+			// the cached copy went with it, and subscribers were told
+			assertTrue(jobService.findJobById(expired.getId()).isEmpty());
+			List<JobEvent> events = jobEventStream.eventsSince(lastSeen).stream()
+					.map(envelope -> (JobEvent) envelope.data()).toList();
+			assertEquals(1, events.size());
+			assertEquals(JobEvent.Type.DELETED, events.get(0).type());
+			assertEquals(expired.getId(), events.get(0).job().id());
+			assertEquals("SUCCESS", events.get(0).job().status());
+		}
+
+		@Test
+		void testPurgeDiscardsBufferedUpdates() {
+			logger.info("Running testPurgeDiscardsBufferedUpdates");
+			LocalDateTime old = LocalDateTime.now().minusDays(200);
+			Job expired = jobService.createJobAsync(new Job("Old Job", "SUCCESS", old, old, "BUILD")).join();
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			JobWriteBehindBuffer buffer = new JobWriteBehindBuffer(beanFactory.getBean(NamedParameterJdbcTemplate.class),
+					beanFactory.getBean(PlatformTransactionManager.class), jobRepo, beanFactory.getBean(JobCache.class),
+					beanFactory.getBean(JobStatsCounter.class), eventPublisher, beanFactory.getBean(JobDictionary.class),
+					meterRegistry, true, 1000, Duration.ofMillis(200));
+			JobRetentionService retention = new JobRetentionService(beanFactory.getBean(NamedParameterJdbcTemplate.class),
+					beanFactory.getBean(PlatformTransactionManager.class), serviceWith(sensitiveDataHasher, buffer),
+					beanFactory.getBean(JobDictionary.class));
+			beanFactory.autowireBean(retention);
+			buffer.update(expired.getId(), buffered -> buffered.setJobName("Renamed Old Job"));
+
+			assertEquals(1, retention.purgeJobsCreatedBefore(LocalDateTime.now().minusDays(90)));
+			assertTrue(buffer.find(expired.getId()).isEmpty());
+			buffer.flush();
+
+			assertEquals(0.0, meterRegistry.counter("jobs.write-behind.conflicts").count());
+			assertFalse(jobRepo.existsById(expired.getId()));
+		}
+	}
+
+	@Nested
+	class ConnectionLimiterTests {
+
+		/**
+		 * Hands out connections that only count how often they are closed, or fails while failing is set
+		 */
+		private class StubDataSource extends AbstractDataSource {
+			private final AtomicInteger closed = new AtomicInteger();
+			private volatile boolean failing;
+
+			@Override
+			public Connection getConnection() throws SQLException {
+				if (failing) {
+					throw new SQLException("Connection refused");
+				}
+				return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+						(proxy, method, args) -> {
+							if (method.getName().equals("close")) {
+								closed.incrementAndGet();
+							}
+							return null;
+						});
+			}
+
+			@Override
+			public Connection getConnection(String username, String password) throws SQLException {
+				return getConnection();
+			}
+		}
+
+		/**
+		 * An environment that converts durations like the application's
+		 */
+		private MockEnvironment environment() {
+			MockEnvironment environment = new MockEnvironment();
+			environment.setConversionService(new ApplicationConversionService());
+			return environment;
+		}
+
+		private double availablePermits(MeterRegistry meterRegistry, String pool) {
+			return meterRegistry.get("jobs.datasource.permit.available").tag("pool", pool).gauge().value();
+		}
+
+		@Test
+		void testPermitIsReleasedOnceWhenConnectionCloses() throws SQLException {
+			logger.info("Running testPermitIsReleasedOnceWhenConnectionCloses");
+			StubDataSource stub = new StubDataSource();
+			MeterRegistry meterRegistry = new SimpleMeterRegistry();
+			ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(stub, "stub", 1, Duration.ofMillis(50), meterRegistry);
+
+			Connection connection = limited.getConnection();
+			assertEquals(0, availablePermits(meterRegistry, "stub"));
+			connection.close();
+			assertEquals(1, availablePermits(meterRegistry, "stub"));
+			// closing twice reaches the pool twice but returns the permit once
+			connection.close();
+			assertEquals(2, stub.closed.get());
+			assertEquals(1, availablePermits(meterRegistry, "stub"));
+
+			limited.getConnection("user", "password").close();
+			assertEquals(1, availablePermits(meterRegistry, "stub"));
+		}
+
+		@Test
+		void testAcquireTimesOutWhenAllPermitsAreHeld() throws SQLException {
+			logger.info("Running testAcquireTimesOutWhenAllPermitsAreHeld");
+			MeterRegistry meterRegistry = new SimpleMeterRegistry();
+			ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(new StubDataSource(), "stub", 1, Duration.ofMillis(50), meterRegistry);
+
+			Connection held = limited.getConnection();
+			long start = System.nanoTime();
+			assertThrows(SQLTransientConnectionException.class, limited::getConnection);
+			assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+			assertEquals(2, meterRegistry.get("jobs.datasource.permit.wait").tag("pool", "stub").timer().count());
+
+			held.close();
+			limited.getConnection().close();
+		}
+
+		@Test
+		void testPermitIsReleasedWhenPoolFails() throws SQLException {
+			logger.info("Running testPermitIsReleasedWhenPoolFails");
+			StubDataSource stub = new StubDataSource();
+			MeterRegistry meterRegistry = new SimpleMeterRegistry();
+			ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(stub, "stub", 1, Duration.ofMillis(50), meterRegistry);
+
+			stub.failing = true;
+			SQLException failure = assertThrows(SQLException.class, limited::getConnection);
+			assertFalse(failure instanceof SQLTransientConnectionException);
+			assertThrows(SQLException.class, () -> limited.getConnection("user", "password"));
+			assertEquals(1, availablePermits(meterRegistry, "stub"));
+
+			stub.failing = false;
+			limited.getConnection().close();
+			assertEquals(1, availablePermits(meterRegistry, "stub"));
+		}
+
+		@Test
+		void testPostProcessorLimitsHikariPoolsToTheirSize() throws Exception {
+			logger.info("Running testPostProcessorLimitsHikariPoolsToTheirSize");
+			MeterRegistry meterRegistry = new SimpleMeterRegistry();
+			DefaultListableBeanFactory factory = new DefaultListableBeanFactory();
+			factory.registerSingleton("meterRegistry", meterRegistry);
+			BeanPostProcessor postProcessor = VirtualThreadConfig.connectionLimiterPostProcessor(
+					environment(), factory.getBeanProvider(MeterRegistry.class));
+
+			HikariDataSource sized = new HikariDataSource();
+			sized.setJdbcUrl("jdbc:h2:mem:limited;DB_CLOSE_DELAY=-1");
+			sized.setMaximumPoolSize(3);
+			Object bean = postProcessor.postProcessAfterInitialization(sized, "dataSource");
+			assertInstanceOf(ConnectionLimitingDataSource.class, bean);
+			assertSame(sized, ((ConnectionLimitingDataSource) bean).getTargetDataSource());
+			assertEquals(3, availablePermits(meterRegistry, "dataSource"));
+
+			// Hikari's default size before the pool starts
+			postProcessor.postProcessAfterInitialization(new HikariDataSource(), "unsized");
+			assertEquals(10, availablePermits(meterRegistry, "unsized"));
+
+			DataSource other = new DriverManagerDataSource("jdbc:h2:mem:limited;DB_CLOSE_DELAY=-1");
+			assertSame(other, postProcessor.postProcessAfterInitialization(other, "other"));
+
+			((ConnectionLimitingDataSource) bean).close();
+			assertTrue(sized.isClosed());
+		}
+
+		@Test
+		void testReplicaRoutingTakesPermitOnlyFromTheChosenPool() throws Exception {
+			logger.info("Running testReplicaRoutingTakesPermitOnlyFromTheChosenPool");
+			MeterRegistry meterRegistry = new SimpleMeterRegistry();
+			DefaultListableBeanFactory factory = new DefaultListableBeanFactory();
+			factory.registerSingleton("meterRegistry", meterRegistry);
+			MockEnvironment environment = environment()
+					.withProperty("app.datasource.limiter.enabled", "true")
+					.withProperty("app.datasource.replica.url", "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1")
+					.withProperty("app.datasource.replica.maximum-pool-size", "2")
+					.withProperty("app.datasource.replica.check-interval", "0s");
+			BeanPostProcessor limiter = VirtualThreadConfig.connectionLimiterPostProcessor(environment, factory.getBeanProvider(MeterRegistry.class));
+			BeanPostProcessor replicaRouting = ReadReplicaConfig.readReplicaPostProcessor(environment, factory.getBeanProvider(MeterRegistry.class));
+			// the limiter wraps the primary pool before the routing wraps the limiter
+			assertTrue(((Ordered) limiter).getOrder() < ((Ordered) replicaRouting).getOrder());
+
+			HikariDataSource primaryPool = new HikariDataSource();
+			primaryPool.setJdbcUrl("jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1");
+			primaryPool.setMaximumPoolSize(4);
+			Object bean = replicaRouting.postProcessAfterInitialization(
+					limiter.postProcessAfterInitialization(primaryPool, "dataSource"), "dataSource");
+			try (ReadReplicaRoutingDataSource routing = assertInstanceOf(ReadReplicaRoutingDataSource.class, bean)) {
+				assertInstanceOf(ConnectionLimitingDataSource.class, routing.getTargetDataSource());
+				assertEquals(4, availablePermits(meterRegistry, "dataSource"));
+				assertEquals(2, availablePermits(meterRegistry, "replica"));
+
+				try (Connection connection = routing.getConnection()) {
+					// the lazy proxy holds no permit until a statement needs the physical connection
+					connection.setReadOnly(true);
+					assertEquals(4, availablePermits(meterRegistry, "dataSource"));
+					assertEquals(2, availablePermits(meterRegistry, "replica"));
+					try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery("CALL DATABASE()")) {
+						rs.next();
+						assertEquals("REPLICA", rs.getString(1));
+					}
+					assertEquals(4, availablePermits(meterRegistry, "dataSource"));
+					assertEquals(1, availablePermits(meterRegistry, "replica"));
+				}
+				assertEquals(2, availablePermits(meterRegistry, "replica"));
+
+				try (Connection connection = routing.getConnection(); Statement statement = connection.createStatement()) {
+					statement.execute("SELECT 1");
+					assertEquals(3, availablePermits(meterRegistry, "dataSource"));
+					assertEquals(2, availablePermits(meterRegistry, "replica"));
+				}
+				assertEquals(4, availablePermits(meterRegistry, "dataSource"));
+			}
+			assertTrue(primaryPool.isClosed());
+		}
+	}
+
+	@Nested
+	class ReplicaRoutingTests {
+
+		private String databaseOf(DataSource dataSource, boolean readOnly) throws SQLException {
+			try (Connection connection = dataSource.getConnection()) {
+				connection.setReadOnly(readOnly);
+				try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery("CALL DATABASE()")) {
+					rs.next();
+					return rs.getString(1);
+				}
+			}
+		}
+
+		@Test
+		void testReadOnlyConnectionsGoToHealthyReplica() throws Exception {
+			logger.info("Running testReadOnlyConnectionsGoToHealthyReplica");
+			DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1");
+			DataSource replica = new DriverManagerDataSource("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1");
+			try (ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(primary, replica,
+					Duration.ZERO, Duration.ofSeconds(10), "SELECT 60", new SimpleMeterRegistry())) {
+				assertEquals("REPLICA", databaseOf(routing, true));
+				assertEquals("PRIMARY", databaseOf(routing, false));
+
+				// a replica 60 seconds behind is taken out of rotation
+				routing.checkReplica();
+				assertFalse(routing.isReplicaUsable());
+				assertEquals("PRIMARY", databaseOf(routing, true));
+			}
+		}
+
+		@Test
+		void testUnreachableReplicaFallsBackToPrimary() throws Exception {
+			logger.info("Running testUnreachableReplicaFallsBackToPrimary");
+			DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1");
+			DataSource replica = new DriverManagerDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE");
+			try (ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(primary, replica,
+					Duration.ZERO, Duration.ofSeconds(10), null, new SimpleMeterRegistry())) {
+				assertEquals("PRIMARY", databaseOf(routing, true));
+				assertFalse(routing.isReplicaUsable());
+			}
+		}
+	}
+
+	@Nested
+	class SerializationTests {
+
+		@JsonSerialize(using = JsonSerializer.None.class)
+		private interface ReflectiveSerialization {
+		}
+
+		@Test
+		void testSummarySerializerMatchesJacksonDefault() throws Exception {
+			logger.info("Running testSummarySerializerMatchesJacksonDefault");
+			ObjectMapper reflective = objectMapper.copy().addMixIn(JobSummary.class, ReflectiveSerialization.class);
+			List<JobSummary> summaries = List.of(
+					new JobSummary(1L, UUID.randomUUID(), "Name \"quoted\"", "SUCCESS",
+							LocalDateTime.of(2026, 1, 2, 3, 4), LocalDateTime.of(2026, 1, 2, 3, 4, 5, 123456000), "BUILD"),
+					new JobSummary(2L, null, null, null, null, null, null),
+					new JobSummary(3L, null, "", "PENDING",
+							LocalDateTime.of(999, 12, 31, 23, 59, 59, 1), LocalDateTime.of(12026, 6, 7, 8, 9, 10, 100000000), "TEST"));
+
+			assertEquals(reflective.writeValueAsString(summaries), objectMapper.writeValueAsString(summaries));
+			assertEquals(summaries, objectMapper.readValue(objectMapper.writeValueAsString(summaries),
+					objectMapper.getTypeFactory().constructCollectionType(List.class, JobSummary.class)));
+		}
+
+		@Test
+		void testDateRangeAsJsonArrayAndNdjson() throws Exception {
+			logger.info("Running testDateRangeAsJsonArrayAndNdjson");
+			LocalDateTime january = LocalDateTime.of(2020, 1, 10, 12, 0);
+			Job first = jobService.createJobAsync(new Job("January Job", "PENDING", january, january, "BUILD", "secret")).join();
+			Job second = jobService.createJobAsync(new Job("Later January Job", "SUCCESS", january.plusDays(5), january.plusDays(5), "TEST")).join();
+			jobService.createJobAsync(new Job("March Job", "PENDING", january.plusMonths(2), january.plusMonths(2), "BUILD")).join();
+			Set<Long> expected = Set.of(first.getId(), second.getId());
+
+			MvcResult json = mockMvc.perform(get("/api/jobs/date-range")
+							.param("startDate", "2020-01-01T00:00:00").param("endDate", "2020-01-31T00:00:00"))
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+					.andReturn();
+			List<JobSummary> jobs = objectMapper.readValue(json.getResponse().getContentAsString(),
+					objectMapper.getTypeFactory().constructCollectionType(List.class, JobSummary.class));
+			assertEquals(expected, jobs.stream().map(JobSummary::id).collect(Collectors.toSet()));
+
+			MvcResult ndjson = mockMvc.perform(get("/api/jobs/date-range").accept(JobController.NDJSON)
+							.param("startDate", "2020-01-01T00:00:00").param("endDate", "2020-01-31T00:00:00"))
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith(JobController.NDJSON))
+					.andReturn();
+			Set<Long> streamed = new HashSet<>();
+			for (String line : ndjson.getResponse().getContentAsString().strip().split("\n")) {
+				streamed.add(objectMapper.readValue(line, JobSummary.class).id());
+			}
+			assertEquals(expected, streamed);
+
+			mockMvc.perform(get("/api/jobs/date-range").param("startDate", "2020-01-01T00:00:00"))
+					.andExpect(status().isBadRequest());
+		}
+	}
+
 	@Nested
 	class IntegrationTests {
 
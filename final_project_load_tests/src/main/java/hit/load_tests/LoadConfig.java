@@ -0,0 +1,102 @@
+package hit.load_tests;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Settings of one load test run: load.properties from the classpath,
+ * overridden by key=value command line arguments.
+ */
+public record LoadConfig(URI baseUrl, int rows, int seedBatchSize, int seedConcurrency,
+                         int rate, int concurrency, Duration warmup, Duration duration, long randomSeed,
+                         Duration dateRangeWindow, int unboundedListsMaxRows, Path reportDir,
+                         Properties slo, Map<Scenario, Integer> mix) {
+
+    public static LoadConfig load(String[] args) {
+        Properties properties = classpathProperties("load.properties");
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            String key = arg.substring(0, separator);
+            if (!properties.containsKey(key)) {
+                throw new IllegalArgumentException("Unknown setting " + key);
+            }
+            properties.setProperty(key, arg.substring(separator + 1));
+        }
+
+        Map<Scenario, Integer> mix = new EnumMap<>(Scenario.class);
+        for (Scenario scenario : Scenario.values()) {
+            int weight = intValue(properties, "mix." + scenario.key());
+            if (weight < 0) {
+                throw new IllegalArgumentException("mix." + scenario.key() + " must not be negative");
+            }
+            mix.put(scenario, weight);
+        }
+
+        String sloFile = properties.getProperty("slo.file").trim();
+        Properties slo = sloFile.isEmpty() ? classpathProperties("slo.properties") : fileProperties(Path.of(sloFile));
+
+        LoadConfig config = new LoadConfig(
+                URI.create(properties.getProperty("base-url").trim()),
+                intValue(properties, "rows"),
+                intValue(properties, "seed.batch-size"),
+                intValue(properties, "seed.concurrency"),
+                intValue(properties, "rate"),
+                intValue(properties, "concurrency"),
+                Duration.parse(properties.getProperty("warmup").trim()),
+                Duration.parse(properties.getProperty("duration").trim()),
+                Long.parseLong(properties.getProperty("random-seed").trim()),
+                Duration.parse(properties.getProperty("date-range.window").trim()),
+                intValue(properties, "unbounded-lists.max-rows"),
+                Path.of(properties.getProperty("report.dir").trim()),
+                slo, mix);
+        if (config.rows < 1 || config.seedBatchSize < 1 || config.seedConcurrency < 1 || config.concurrency < 1) {
+            throw new IllegalArgumentException("rows, seed.batch-size, seed.concurrency and concurrency must be positive");
+        }
+        if (config.rate < 0 || config.duration.isNegative() || config.duration.isZero() || config.warmup.isNegative()) {
+            throw new IllegalArgumentException("rate, warmup and duration must not be negative, duration must not be zero");
+        }
+        return config;
+    }
+
+    private static int intValue(Properties properties, String key) {
+        try {
+            return Integer.parseInt(properties.getProperty(key).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be an integer", e);
+        }
+    }
+
+    private static Properties classpathProperties(String name) {
+        try (InputStream in = LoadConfig.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException(name + " not found on the classpath");
+            }
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Properties fileProperties(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + path, e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package hit.load_tests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Seeds the database, runs the scenario mix against a running application and
+ * checks the results against the SLO thresholds. Exits with 1 if one is missed.
+ * <p>
+ * Only requests started after the warmup are recorded. In open loop mode
+ * (rate above 0) latency is measured from the time a request was due, not from
+ * when it was sent, so a slow response also counts against the requests it held up
+ * (no coordinated omission).
+ */
+public class LoadTest {
+    private final HttpClient client;
+    private final Workload workload;
+    private final LoadConfig config;
+    private final Scenario[] scenarios;
+    private final int[] cumulativeWeights;
+    private final Map<Scenario, ScenarioStats> stats = new EnumMap<>(Scenario.class);
+
+    LoadTest(HttpClient client, Workload workload, LoadConfig config, Map<Scenario, Integer> mix) {
+        this.client = client;
+        this.workload = workload;
+        this.config = config;
+        List<Scenario> enabled = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int sum = 0;
+        for (Map.Entry<Scenario, Integer> entry : mix.entrySet()) {
+            if (entry.getValue() > 0) {
+                sum += entry.getValue();
+                enabled.add(entry.getKey());
+                weights.add(sum);
+            }
+            stats.put(entry.getKey(), new ScenarioStats());
+        }
+        if (enabled.isEmpty()) {
+            throw new IllegalArgumentException("Every scenario has weight 0");
+        }
+        this.scenarios = enabled.toArray(Scenario[]::new);
+        this.cumulativeWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LoadConfig config = LoadConfig.load(args);
+        ObjectMapper objectMapper = new ObjectMapper();
+        try (HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build()) {
+            new Seeder(client, objectMapper, config).seed();
+            Workload workload = Workload.start(client, objectMapper, config);
+
+            Map<Scenario, Integer> mix = new EnumMap<>(config.mix());
+            if (config.rows() > config.unboundedListsMaxRows()) {
+                mix.replaceAll((scenario, weight) -> scenario.unbounded() ? 0 : weight);
+                System.out.printf("rows above unbounded-lists.max-rows, status-list, job-type-list and export left out%n");
+            }
+            System.out.printf("Load: %s against %s, concurrency %d, warmup %s, duration %s%n",
+                    config.rate() > 0 ? "open loop at " + config.rate() + " req/s" : "closed loop",
+                    config.baseUrl(), config.concurrency(), config.warmup(), config.duration());
+
+            Report report = new LoadTest(client, workload, config, mix).run();
+            report.print(System.out);
+            report.write(config.reportDir());
+            System.out.printf("%nReport written to %s%n", config.reportDir().resolve("load-report.json"));
+
+            List<String> violations = report.check(config.slo());
+            if (!violations.isEmpty()) {
+                System.out.println("\nSLO violations:");
+                violations.forEach(violation -> System.out.println("  " + violation));
+                System.exit(1);
+            }
+            System.out.println("\nAll SLOs met");
+        }
+    }
+
+    Report run() throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup().toNanos();
+        long end = measureFrom + config.duration().toNanos();
+        if (config.rate() > 0) {
+            runOpenLoop(start, measureFrom, end);
+        } else {
+            runClosedLoop(measureFrom, end);
+        }
+        // until the last measured response, so an overloaded application shows lower throughput than the rate
+        Duration measured = Duration.ofNanos(System.nanoTime() - measureFrom);
+        Map<Scenario, ScenarioStats.Result> results = new EnumMap<>(Scenario.class);
+        stats.forEach((scenario, scenarioStats) -> results.put(scenario, scenarioStats.result()));
+        return new Report(results, measured);
+    }
+
+    private void runClosedLoop(long measureFrom, long end) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < config.concurrency(); i++) {
+            SplittableRandom random = new SplittableRandom(config.randomSeed() + i);
+            workers.add(Thread.ofVirtual().name("load-", i).start(() -> {
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    execute(random, now, now >= measureFrom);
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void runOpenLoop(long start, long measureFrom, long end) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(config.randomSeed());
+        Semaphore inFlight = new Semaphore(config.concurrency());
+        double interval = 1e9 / config.rate();
+        for (long n = 0; ; n++) {
+            long due = start + (long) (n * interval);
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // blocks while concurrency requests are in flight; the requests due meanwhile
+            // are sent late and their latency includes the delay
+            inFlight.acquire();
+            SplittableRandom requestRandom = random.split();
+            Thread.ofVirtual().start(() -> {
+                try {
+                    execute(requestRandom, due, due >= measureFrom);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        inFlight.acquire(config.concurrency());
+    }
+
+    /**
+     * Sends one request of a scenario picked by weight
+     * @param startedAt when the request was due, the start of its latency
+     * @param measured whether the request counts, false during the warmup
+     */
+    private void execute(SplittableRandom random, long startedAt, boolean measured) {
+        Scenario scenario = null;
+        HttpRequest request = null;
+        // scenarios acting on jobs of the run return no request until jobs are created or claimed,
+        // another scenario is picked then; give up if no other is enabled
+        for (int attempt = 0; request == null; attempt++) {
+            if (attempt == 100) {
+                return;
+            }
+            scenario = pick(random);
+            request = scenario.request(workload, random);
+        }
+        ScenarioStats.Outcome outcome;
+        String detail = null;
+        try {
+            HttpResponse<byte[]> response = client.send(request, scenario.needsBody()
+                    ? HttpResponse.BodyHandlers.ofByteArray()
+                    : responseInfo -> HttpResponse.BodySubscribers.replacing(null));
+            int status = response.statusCode();
+            if (status / 100 == 2) {
+                outcome = ScenarioStats.Outcome.OK;
+                if (scenario.needsBody()) {
+                    scenario.completed(workload, response.body());
+                }
+            } else if (scenario.expected(status)) {
+                outcome = ScenarioStats.Outcome.EXPECTED;
+            } else if (status == 429 || status == 503) {
+                outcome = ScenarioStats.Outcome.REJECTED;
+            } else {
+                outcome = ScenarioStats.Outcome.ERROR;
+                detail = status + " " + request.method() + " " + request.uri().getRawPath();
+            }
+        } catch (IOException e) {
+            outcome = ScenarioStats.Outcome.ERROR;
+            detail = e.getClass().getSimpleName() + " " + request.method() + " " + request.uri().getRawPath();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (measured) {
+            stats.get(scenario).record(System.nanoTime() - startedAt, outcome, detail);
+        }
+    }
+
+    private Scenario pick(SplittableRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return scenarios[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
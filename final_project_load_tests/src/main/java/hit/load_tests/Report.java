@@ -0,0 +1,139 @@
+package hit.load_tests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Results of the measured part of a run, per scenario and for all requests,
+ * and their check against the SLO thresholds.
+ * <p>
+ * Thresholds are properties named scope.metric.max or scope.metric.min, where
+ * scope is "all" or a scenario key and metric is one of p50, p99, p999, max
+ * (milliseconds), throughput (requests per second), error-rate or rejected-rate.
+ */
+public class Report {
+    static final String ALL = "all";
+
+    private final Map<String, Metrics> metrics = new LinkedHashMap<>();
+    private final Map<String, ScenarioStats.Result> results = new LinkedHashMap<>();
+
+    public Report(Map<Scenario, ScenarioStats.Result> byScenario, Duration measured) {
+        double seconds = measured.toNanos() / 1e9;
+        Histogram all = new Histogram(3);
+        long ok = 0, expected = 0, rejected = 0, errors = 0;
+        List<String> errorSamples = new ArrayList<>();
+        for (Map.Entry<Scenario, ScenarioStats.Result> entry : byScenario.entrySet()) {
+            ScenarioStats.Result result = entry.getValue();
+            if (result.total() == 0) {
+                continue;
+            }
+            results.put(entry.getKey().key(), result);
+            metrics.put(entry.getKey().key(), Metrics.of(result, seconds));
+            all.add(result.latencies());
+            ok += result.ok();
+            expected += result.expected();
+            rejected += result.rejected();
+            errors += result.errors();
+            result.errorSamples().forEach(sample -> errorSamples.add(entry.getKey().key() + ": " + sample));
+        }
+        ScenarioStats.Result total = new ScenarioStats.Result(all, ok, expected, rejected, errors, errorSamples);
+        results.put(ALL, total);
+        metrics.put(ALL, Metrics.of(total, seconds));
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%n%-14s %9s %9s %9s %9s %9s %9s %8s %8s %8s%n",
+                "scenario", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "404/409", "429/503", "errors");
+        metrics.forEach((scope, m) -> out.printf("%-14s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %8d %8d %8d%n",
+                scope, m.requests, m.throughput, m.p50, m.p99, m.p999, m.max, m.expected, m.rejected, m.errors));
+        List<String> samples = results.get(ALL).errorSamples();
+        if (!samples.isEmpty()) {
+            out.println("\nSample errors:");
+            samples.forEach(sample -> out.println("  " + sample));
+        }
+    }
+
+    /**
+     * Writes load-report.json and one HdrHistogram percentile distribution
+     * (.hgrm, in milliseconds) per scenario to the directory
+     */
+    public void write(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(dir.resolve("load-report.json").toFile(), metrics);
+        for (Map.Entry<String, ScenarioStats.Result> entry : results.entrySet()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve("load-" + entry.getKey() + ".hgrm")))) {
+                entry.getValue().latencies().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    /**
+     * @return a description of every threshold that was not met, empty if all were
+     */
+    public List<String> check(Properties slo) {
+        List<String> violations = new ArrayList<>();
+        for (String key : new TreeSet<>(slo.stringPropertyNames())) {
+            String[] parts = key.split("\\.");
+            if (parts.length != 3 || !(parts[2].equals("max") || parts[2].equals("min"))) {
+                throw new IllegalArgumentException("SLO " + key + " is not scope.metric.max or scope.metric.min");
+            }
+            double threshold = Double.parseDouble(slo.getProperty(key).trim());
+            Metrics m = metrics.get(parts[0]);
+            if (m == null) {
+                // the scenario did not run, e.g. disabled in the mix
+                continue;
+            }
+            double value = m.value(parts[1]);
+            boolean met = parts[2].equals("max") ? value <= threshold : value >= threshold;
+            if (!met) {
+                violations.add(String.format("%s = %.4f, %s %s", key, value, parts[2].equals("max") ? "above" : "below", slo.getProperty(key).trim()));
+            }
+        }
+        return violations;
+    }
+
+    record Metrics(long requests, double throughput, double p50, double p99, double p999, double max,
+                   long expected, long rejected, long errors, double errorRate, double rejectedRate) {
+
+        static Metrics of(ScenarioStats.Result result, double seconds) {
+            Histogram h = result.latencies();
+            long requests = result.total();
+            return new Metrics(requests, requests / seconds,
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(99)),
+                    millis(h.getValueAtPercentile(99.9)), millis(h.getMaxValue()),
+                    result.expected(), result.rejected(), result.errors(),
+                    requests == 0 ? 0 : (double) result.errors() / requests,
+                    requests == 0 ? 0 : (double) result.rejected() / requests);
+        }
+
+        private static double millis(long micros) {
+            return micros / 1000.0;
+        }
+
+        double value(String metric) {
+            return switch (metric) {
+                case "p50" -> p50;
+                case "p99" -> p99;
+                case "p999" -> p999;
+                case "max" -> max;
+                case "throughput" -> throughput;
+                case "error-rate" -> errorRate;
+                case "rejected-rate" -> rejectedRate;
+                default -> throw new IllegalArgumentException("Unknown SLO metric " + metric);
+            };
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package hit.load_tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * One kind of request of the mix, covering every JobController endpoint
+ * except the server-sent events stream, which holds its connection open
+ * instead of answering. Weights are set by the mix.* settings.
+ */
+public enum Scenario {
+    GET_BY_ID(404, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            return workload.request("/api/jobs/" + workload.randomId(random)).GET().build();
+        }
+    },
+    GET_BY_UUID(404, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            long index = random.nextLong(workload.config().rows());
+            return workload.request("/api/jobs/uuid/" + Seeder.uuid(index)).GET().build();
+        }
+    },
+    /** Keyset page of the largest size from a random point of the table */
+    LIST_PAGE(0, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            return workload.request("/api/jobs?limit=1000&afterId=" + (workload.randomId(random) - 1)).GET().build();
+        }
+    },
+    DATE_RANGE(0, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            LocalDateTime start = workload.randomWindowStart(random);
+            return workload.request("/api/jobs/date-range?startDate=" + start
+                    + "&endDate=" + start.plus(workload.config().dateRangeWindow())).GET().build();
+        }
+    },
+    SEARCH(0, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            LocalDateTime start = workload.randomWindowStart(random);
+            return workload.request("/api/jobs/search?status=" + workload.randomStatus(random)
+                    + "&jobType=" + workload.randomJobType(random)
+                    + "&createdFrom=" + start + "&createdTo=" + start.plus(workload.config().dateRangeWindow())
+                    + "&sort=createdAt&descending=true&limit=100").GET().build();
+        }
+    },
+    STATS(0, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            if (random.nextBoolean()) {
+                return workload.request("/api/jobs/stats").GET().build();
+            }
+            // histogram of one day of the seeded span
+            LocalDateTime from = workload.randomWindowStart(random);
+            return workload.request("/api/jobs/stats?bucket=hour&from=" + from + "&to=" + from.plusDays(1)).GET().build();
+        }
+    },
+    STATUS_LIST(0, true) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            return workload.request("/api/jobs/status/" + workload.randomStatus(random)).GET().build();
+        }
+    },
+    JOB_TYPE_LIST(0, true) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            return workload.request("/api/jobs/jobType/" + workload.randomJobType(random)).GET().build();
+        }
+    },
+    /** NDJSON export of the whole table */
+    EXPORT(0, true) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            return workload.request("/api/jobs").header("Accept", "application/x-ndjson").GET().build();
+        }
+    },
+    CREATE(0, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            return workload.jsonRequest("/api/jobs", "POST", workload.newJob(random)).build();
+        }
+
+        @Override
+        void completed(Workload workload, byte[] body) throws IOException {
+            workload.created().add(workload.objectMapper().readTree(body).path("id").asLong());
+        }
+    },
+    BATCH_CREATE(0, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            ArrayNode jobs = workload.objectMapper().createArrayNode();
+            for (int i = 0; i < 10; i++) {
+                jobs.add(workload.newJob(random));
+            }
+            return workload.jsonRequest("/api/jobs/batch", "POST", jobs).build();
+        }
+
+        @Override
+        void completed(Workload workload, byte[] body) throws IOException {
+            for (JsonNode result : workload.objectMapper().readTree(body).path("results")) {
+                if (result.hasNonNull("id")) {
+                    workload.created().add(result.get("id").asLong());
+                }
+            }
+        }
+    },
+    /** PUT of a job created by the run, which goes back to the pool afterwards */
+    UPDATE(409, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            Long id = workload.created().poll();
+            if (id == null) {
+                return null;
+            }
+            return workload.jsonRequest("/api/jobs/" + id, "PUT", workload.newJob(random).put("status", "RUNNING")).build();
+        }
+
+        @Override
+        void completed(Workload workload, byte[] body) throws IOException {
+            workload.created().add(workload.objectMapper().readTree(body).path("id").asLong());
+        }
+    },
+    CLAIM(0, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            return workload.request("/api/jobs/claim?limit=5&lease=PT1M").POST(HttpRequest.BodyPublishers.noBody()).build();
+        }
+
+        @Override
+        void completed(Workload workload, byte[] body) throws IOException {
+            for (JsonNode job : workload.objectMapper().readTree(body)) {
+                workload.claimed().add(job.path("id").asLong());
+            }
+        }
+    },
+    /** PATCH of a claimed job to its final status, as a worker does */
+    COMPLETE(409, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            Long id = workload.claimed().poll();
+            if (id == null) {
+                return null;
+            }
+            String status = random.nextInt(10) == 0 ? "FAILED" : "SUCCESS";
+            return workload.jsonRequest("/api/jobs/" + id, "PATCH", workload.objectMapper().createObjectNode()
+                    .put("status", status)
+                    .put("updatedAt", LocalDateTime.now().toString())).build();
+        }
+    },
+    DELETE(0, false) {
+        @Override
+        HttpRequest request(Workload workload, SplittableRandom random) {
+            Long id = workload.created().poll();
+            if (id == null) {
+                return null;
+            }
+            return workload.request("/api/jobs/" + id).DELETE().build();
+        }
+    };
+
+    private final int expectedClientError;
+    private final boolean unbounded;
+
+    Scenario(int expectedClientError, boolean unbounded) {
+        this.expectedClientError = expectedClientError;
+        this.unbounded = unbounded;
+    }
+
+    /** Name in the mix.* settings, the SLO file and the report */
+    public String key() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    /**
+     * 4xx status that is a normal answer rather than an error, 0 if none:
+     * 404 for a random id that was deleted, 409 when a claim or lease requeue
+     * changed the job at the same time
+     */
+    boolean expected(int status) {
+        return status == expectedClientError;
+    }
+
+    /** Returns a whole table, so it is only part of the mix on small tables */
+    boolean unbounded() {
+        return unbounded;
+    }
+
+    /**
+     * @return the next request, or null if the scenario has nothing to act on yet
+     */
+    abstract HttpRequest request(Workload workload, SplittableRandom random);
+
+    /**
+     * Called with the body of a 2xx response
+     */
+    void completed(Workload workload, byte[] body) throws IOException {
+    }
+
+    /** Only scenarios that override completed need the body */
+    boolean needsBody() {
+        return this == CREATE || this == BATCH_CREATE || this == UPDATE || this == CLAIM;
+    }
+}
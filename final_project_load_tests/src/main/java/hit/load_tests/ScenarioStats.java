@@ -0,0 +1,60 @@
+package hit.load_tests;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcomes and latencies of one scenario, recorded concurrently by the workers.
+ * Latencies are kept in microseconds, up to one minute at three significant digits.
+ */
+public class ScenarioStats {
+    private static final int MAX_ERROR_SAMPLES = 5;
+
+    private final Recorder recorder = new Recorder(TimeUnit.MINUTES.toMicros(1), 3);
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder expected = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Queue<String> errorSamples = new ConcurrentLinkedQueue<>();
+
+    void record(long latencyNanos, Outcome outcome, String detail) {
+        recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), TimeUnit.MINUTES.toMicros(1)));
+        switch (outcome) {
+            case OK -> ok.increment();
+            case EXPECTED -> expected.increment();
+            case REJECTED -> rejected.increment();
+            case ERROR -> {
+                errors.increment();
+                if (errorSamples.size() < MAX_ERROR_SAMPLES) {
+                    errorSamples.add(detail);
+                }
+            }
+        }
+    }
+
+    Result result() {
+        Histogram latencies = recorder.getIntervalHistogram();
+        return new Result(latencies, ok.sum(), expected.sum(), rejected.sum(), errors.sum(), errorSamples.stream().toList());
+    }
+
+    enum Outcome {
+        OK,
+        /** 404 or 409 where the scenario allows it */
+        EXPECTED,
+        /** 429 or 503 from the rate limiter or the concurrency limit */
+        REJECTED,
+        ERROR
+    }
+
+    record Result(Histogram latencies, long ok, long expected, long rejected, long errors, List<String> errorSamples) {
+        long total() {
+            return ok + expected + rejected + errors;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package hit.load_tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seeds the jobs the scenarios read, through POST /api/jobs/batch.
+ * Job i is fully determined by i: its uuid, dates, status and type never change,
+ * so seeding is idempotent. A batch whose last job already exists is skipped,
+ * and any job of a partially written batch is replayed by its uuid instead of
+ * inserted again.
+ */
+public class Seeder {
+    /** createdAt of seeded jobs falls in the 90 days before this instant, whatever the row count */
+    static final LocalDateTime ANCHOR = LocalDateTime.of(2024, 1, 1, 0, 0);
+    static final Duration SPAN = Duration.ofDays(90);
+
+    private static final String[] JOB_TYPES = {"BUILD", "DEPLOY", "TEST"};
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final LoadConfig config;
+
+    public Seeder(HttpClient client, ObjectMapper objectMapper, LoadConfig config) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.config = config;
+    }
+
+    static UUID uuid(long index) {
+        return UUID.nameUUIDFromBytes(("load:" + index).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static LocalDateTime createdAt(long index) {
+        // 7919 is prime, so consecutive jobs are spread over the whole span
+        return ANCHOR.minus(SPAN).plusSeconds(index * 7919 % SPAN.toSeconds());
+    }
+
+    /** 10% PENDING and 10% RUNNING, so claims have work and status filters are selective */
+    static String status(long index) {
+        return switch ((int) (index % 20)) {
+            case 0, 1 -> "PENDING";
+            case 2, 3 -> "RUNNING";
+            case 4, 5, 6 -> "FAILED";
+            default -> "SUCCESS";
+        };
+    }
+
+    static String jobType(long index) {
+        return JOB_TYPES[(int) (index % JOB_TYPES.length)];
+    }
+
+    /**
+     * Makes sure jobs 0 to rows - 1 exist.
+     * @return number of jobs inserted by this call
+     */
+    public int seed() throws IOException, InterruptedException {
+        int rows = config.rows();
+        if (exists(rows - 1)) {
+            System.out.printf("Seed: %,d jobs already present%n", rows);
+            return 0;
+        }
+        int batchSize = config.seedBatchSize();
+        int batches = (rows + batchSize - 1) / batchSize;
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger created = new AtomicInteger();
+        long start = System.nanoTime();
+        System.out.printf("Seed: writing %,d jobs in %,d batches%n", rows, batches);
+        try (ExecutorService executor = Executors.newFixedThreadPool(config.seedConcurrency())) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int batch = 0; batch < batches; batch++) {
+                int from = batch * batchSize;
+                int to = Math.min(rows, from + batchSize);
+                futures.add(executor.submit(() -> {
+                    if (!exists(to - 1)) {
+                        created.addAndGet(writeBatch(from, to));
+                    }
+                    int finished = done.incrementAndGet();
+                    if (finished % Math.max(1, batches / 10) == 0 || finished == batches) {
+                        System.out.printf("Seed: %,d/%,d batches%n", finished, batches);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    executor.shutdownNow();
+                    throw new IllegalStateException("Seeding failed", e.getCause());
+                }
+            }
+        }
+        System.out.printf("Seed: %,d jobs created in %d s%n", created.get(), (System.nanoTime() - start) / 1_000_000_000);
+        return created.get();
+    }
+
+    private boolean exists(long index) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(config.baseUrl().resolve("/api/jobs/uuid/" + uuid(index))).GET().build();
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200 && status != 404) {
+            throw new IllegalStateException("GET /api/jobs/uuid answered " + status);
+        }
+        return status == 200;
+    }
+
+    private int writeBatch(int from, int to) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder((to - from) * 256);
+        for (long i = from; i < to; i++) {
+            body.append(objectMapper.writeValueAsString(seedJob(i))).append('\n');
+        }
+        HttpRequest request = HttpRequest.newBuilder(config.baseUrl().resolve("/api/jobs/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .timeout(Duration.ofMinutes(10))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("POST /api/jobs/batch answered " + response.statusCode());
+        }
+        JsonNode result = objectMapper.readTree(response.body());
+        if (result.path("failed").asInt() > 0) {
+            throw new IllegalStateException("Seed batch " + from + "-" + to + " rejected records: "
+                    + result.path("results").findValuesAsText("error").stream().filter(e -> !e.equals("null")).limit(3).toList());
+        }
+        return result.path("created").asInt();
+    }
+
+    private JsonNode seedJob(long index) {
+        LocalDateTime createdAt = createdAt(index);
+        return objectMapper.createObjectNode()
+                .put("jobName", "load-job-" + index)
+                .put("status", status(index))
+                .put("createdAt", createdAt.toString())
+                .put("updatedAt", createdAt.plusSeconds(index % 600).toString())
+                .put("jobType", jobType(index))
+                .put("sensitiveData", "load-secret-" + index)
+                .put("uuid", uuid(index).toString());
+    }
+}
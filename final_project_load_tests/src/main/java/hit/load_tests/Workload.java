@@ -0,0 +1,122 @@
+package hit.load_tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * What the scenarios act on: the id range of the table when the run started,
+ * and the jobs created and claimed during the run. Mutating scenarios only
+ * touch jobs of the run, so the seeded rows the read scenarios query stay as seeded.
+ */
+public class Workload {
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final String[] STATUSES = {"PENDING", "RUNNING", "SUCCESS", "FAILED"};
+    private static final String[] JOB_TYPES = {"BUILD", "DEPLOY", "TEST"};
+
+    private final LoadConfig config;
+    private final ObjectMapper objectMapper;
+    private final long minId;
+    private final long maxId;
+    private final Queue<Long> created = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> claimed = new ConcurrentLinkedQueue<>();
+
+    private Workload(LoadConfig config, ObjectMapper objectMapper, long minId, long maxId) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.minId = minId;
+        this.maxId = maxId;
+    }
+
+    /**
+     * Reads the lowest and highest job id from the application
+     */
+    public static Workload start(HttpClient client, ObjectMapper objectMapper, LoadConfig config) throws IOException, InterruptedException {
+        JsonNode first = getJson(client, objectMapper, config.baseUrl().resolve("/api/jobs?limit=1"));
+        JsonNode last = getJson(client, objectMapper, config.baseUrl().resolve("/api/jobs/search?sort=id&descending=true&limit=1")).path("jobs");
+        if (first.isEmpty() || last.isEmpty()) {
+            throw new IllegalStateException("No jobs in the database, seeding did not run");
+        }
+        return new Workload(config, objectMapper, first.get(0).path("id").asLong(), last.get(0).path("id").asLong());
+    }
+
+    private static JsonNode getJson(HttpClient client, ObjectMapper objectMapper, URI uri) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + uri + " answered " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    LoadConfig config() {
+        return config;
+    }
+
+    /** A job id from the range of the table, deleted jobs give 404 */
+    long randomId(SplittableRandom random) {
+        return random.nextLong(minId, maxId + 1);
+    }
+
+    /** Start of a date-range window inside the span of the seeded createdAt values */
+    LocalDateTime randomWindowStart(SplittableRandom random) {
+        long seconds = Math.max(1, Seeder.SPAN.minus(config.dateRangeWindow()).toSeconds());
+        return Seeder.ANCHOR.minus(Seeder.SPAN).plusSeconds(random.nextLong(seconds));
+    }
+
+    String randomStatus(SplittableRandom random) {
+        return STATUSES[random.nextInt(STATUSES.length)];
+    }
+
+    String randomJobType(SplittableRandom random) {
+        return JOB_TYPES[random.nextInt(JOB_TYPES.length)];
+    }
+
+    Queue<Long> created() {
+        return created;
+    }
+
+    Queue<Long> claimed() {
+        return claimed;
+    }
+
+    /** A new PENDING job as accepted by POST /api/jobs */
+    ObjectNode newJob(SplittableRandom random) {
+        LocalDateTime now = LocalDateTime.now();
+        return objectMapper.createObjectNode()
+                .put("jobName", "load-new-" + Long.toHexString(random.nextLong()))
+                .put("status", "PENDING")
+                .put("createdAt", now.toString())
+                .put("updatedAt", now.toString())
+                .put("jobType", randomJobType(random))
+                .put("sensitiveData", "load-secret");
+    }
+
+    ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    HttpRequest.Builder request(String pathAndQuery) {
+        return HttpRequest.newBuilder(config.baseUrl().resolve(pathAndQuery)).timeout(REQUEST_TIMEOUT);
+    }
+
+    HttpRequest.Builder jsonRequest(String pathAndQuery, String method, JsonNode body) {
+        try {
+            return request(pathAndQuery)
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}